@@ -31,6 +31,56 @@ public class Configuration {
    */
   public static final int TIMEOUT_SECONDS = 5000;
   
+  /**
+   * Upper limit for the threads used to walk the directory structure on the agent.
+   */
+  public static final int MAX_DISCOVERY_PARALLELISM = 32;
+
+  /**
+   * Upper limit for the threads used to package the files on the agent.
+   */
+  public static final int MAX_PACKAGING_THREADS = 64;
+  
+  /**
+   * Size of one chunk of a resumable upload.
+   */
+  public static final int UPLOAD_CHUNK_SIZE = 8 * 1024 * 1024;
+  
+  /**
+   * How many times in a row a chunk of a resumable upload may fail, and the wait after the first
+   * failure. The wait doubles after every further failure.
+   */
+  public static final int UPLOAD_CHUNK_RETRIES = 5;
+  public static final long UPLOAD_RETRY_BACKOFF_MILLIS = 2000;
+  
+  /**
+   * How often the progress of the uploads is printed to the build console at most.
+   */
+  public static final int UPLOAD_PROGRESS_INTERVAL_SECONDS = 15;
+  
+  /**
+   * The most polls of products running at a time, for all builds together.
+   */
+  public static final int POLL_REQUESTS_IN_FLIGHT = MAX_REQUESTS_TO_PROTECODE;
+  
+  /**
+   * How much the wait between polls of a product grows after every poll, and the fraction the
+   * wait is moved randomly either way.
+   */
+  public static final double POLL_BACKOFF_FACTOR = 2.0;
+  public static final double POLL_JITTER = 0.2;
+  
+  /**
+   * How long an interrupted or timed out build waits for Protecode SC to accept the aborts of its
+   * scans.
+   */
+  public static final int ABORT_TIMEOUT_SECONDS = 30;
+  
+  /**
+   * How many earlier builds are looked through for a scan which could be reused.
+   */
+  public static final int FINGERPRINT_LOOKBACK_BUILDS = 20;
+  
   /**
    * Client name to be used in http headers. 
    */
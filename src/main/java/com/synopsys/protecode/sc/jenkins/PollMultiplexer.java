@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiException;
+import com.synopsys.protecode.sc.jenkins.interfaces.Listeners.PollService;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import com.synopsys.protecode.sc.jenkins.utils.Backoff;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls the products of all builds on the controller. Builds register the products they wait for
+ * and get a future which completes when the product is ready or failed. One scheduler thread
+ * decides when each product is polled, and at most POLL_REQUESTS_IN_FLIGHT polls run at a time,
+ * however many builds are waiting.
+ *
+ * A product which several builds wait for, for example a package Protecode SC already had, is
+ * polled once for all of them. The result fetches of the ready products go through the same
+ * budget, ahead of the polls, since they finish builds. All state is kept on the scheduler thread,
+ * the answers are handed over to it, so no locks are needed.
+ */
+public final class PollMultiplexer {
+
+  /** Makes the status request of a product, ProtecodeScService.poll for a real server */
+  interface StatusRequest {
+    void poll(int productId, PollService listener);
+  }
+
+  private static final Logger LOGGER = Logger.getLogger(PollMultiplexer.class.getName());
+  private static final PollMultiplexer INSTANCE = new PollMultiplexer(
+    Configuration.POLL_REQUESTS_IN_FLIGHT
+  );
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+    (runnable) -> {
+      Thread thread = new Thread(runnable, "protecode-poll");
+      thread.setDaemon(true);
+      return thread;
+    }
+  );
+  private final int maxInFlight;
+  private final Map<Key, Product> products = new HashMap<>();
+  private final PriorityQueue<Product> due = new PriorityQueue<>(
+    Comparator.comparingLong((Product product) -> product.dueAt)
+  );
+  /** Requests other than polls waiting for the budget, in the order they came */
+  private final Deque<Request<?>> requests = new ArrayDeque<>();
+  private int inFlight = 0;
+  private ScheduledFuture<?> wakeUp = null;
+  private volatile int registered = 0;
+
+  PollMultiplexer(int maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  public static PollMultiplexer instance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @param service Polls the product, if no other build polls it already
+   * @param productId The product to wait for
+   * @param backoff The waits between the polls, if no other build polls the product already
+   * @return Completes with the status of the product once it's ready or failed, exceptionally if
+   * a poll fails. Cancelling it stops the polling, unless other builds wait for the product.
+   */
+  public CompletableFuture<HttpTypes.UploadResponse> register(
+    ProtecodeScService service,
+    int productId,
+    Backoff backoff
+  ) {
+    return register(service.getHost(), service::poll, productId, backoff);
+  }
+
+  /**
+   * @param host The server of the product, products are told apart by host and id
+   * @param statusRequest Polls the product, if no other build polls it already
+   */
+  CompletableFuture<HttpTypes.UploadResponse> register(
+    String host,
+    StatusRequest statusRequest,
+    int productId,
+    Backoff backoff
+  ) {
+    CompletableFuture<HttpTypes.UploadResponse> waiter = new CompletableFuture<>();
+    Key key = new Key(host, productId);
+    scheduler.execute(() -> {
+      Product product = products.get(key);
+      if (product == null) {
+        product = new Product(key, statusRequest, backoff);
+        product.dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff.delay(0));
+        products.put(key, product);
+        due.add(product);
+        registered = products.size();
+      } else {
+        LOGGER.log(Level.FINE, "Product {0} is polled already, waiting with the other builds",
+          productId);
+      }
+      product.waiters.add(waiter);
+      dispatch();
+    });
+    return waiter;
+  }
+
+  /**
+   * Makes a request within the budget of requests in flight, for example a result fetch.
+   *
+   * @param request Sends the request, called on the scheduler thread once the budget allows
+   * @return Completes as the request does. Cancelling it cancels the request, or drops it if it
+   * hasn't been sent yet.
+   */
+  public <T> CompletableFuture<T> request(Supplier<CompletableFuture<T>> request) {
+    Request<T> queued = new Request<>(request);
+    scheduler.execute(() -> {
+      requests.add(queued);
+      dispatch();
+    });
+    return queued.result;
+  }
+
+  /**
+   * @return The products some build is waiting for
+   */
+  public int getProducts() {
+    return registered;
+  }
+
+  /**
+   * Sends the queued requests and polls the products which are due, as many as the budget allows.
+   * Runs on the scheduler.
+   */
+  private void dispatch() {
+    while (!requests.isEmpty() && inFlight < maxInFlight) {
+      Request<?> request = requests.poll();
+      if (!request.result.isDone()) {
+        inFlight++;
+        request.send();
+      }
+    }
+    long now = System.nanoTime();
+    while (!due.isEmpty() && due.peek().dueAt <= now && inFlight < maxInFlight) {
+      Product product = due.poll();
+      product.waiters.removeIf(CompletableFuture::isDone);
+      if (product.waiters.isEmpty()) {
+        // Every build waiting for it was cancelled
+        forget(product);
+        continue;
+      }
+      inFlight++;
+      try {
+        product.statusRequest.poll(product.key.productId, new PollService() {
+          @Override
+          public void setScanStatus(HttpTypes.UploadResponse status) {
+            scheduler.execute(() -> answered(product, status, null));
+          }
+
+          @Override
+          public void setError(String reason) {
+            scheduler.execute(() -> answered(product, null, reason));
+          }
+        });
+      } catch (RuntimeException e) {
+        // Nothing will answer, the budget and the waiters are released here
+        LOGGER.log(Level.WARNING, "Polling product {0} failed: {1}",
+          new Object[] {product.key.productId, e.toString()});
+        String reason = "Polling product " + product.key.productId + " failed: " + e;
+        scheduler.execute(() -> answered(product, null, reason));
+      }
+    }
+    if (wakeUp != null) {
+      wakeUp.cancel(false);
+      wakeUp = null;
+    }
+    // With the budget used up the next answer dispatches again
+    if (!due.isEmpty() && inFlight < maxInFlight) {
+      wakeUp = scheduler.schedule(this::dispatch, due.peek().dueAt - now, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** Runs on the scheduler */
+  private void answered(Product product, HttpTypes.UploadResponse status, String error) {
+    inFlight--;
+    if (error != null) {
+      ApiException failure = new ApiException(error);
+      product.waiters.forEach((waiter) -> waiter.completeExceptionally(failure));
+      forget(product);
+    } else if (isFinished(status)) {
+      product.waiters.forEach((waiter) -> waiter.complete(status));
+      forget(product);
+    } else {
+      product.attempt++;
+      product.dueAt = System.nanoTime()
+        + TimeUnit.MILLISECONDS.toNanos(product.backoff.delay(product.attempt));
+      due.add(product);
+    }
+    dispatch();
+  }
+
+  private void forget(Product product) {
+    products.remove(product.key);
+    registered = products.size();
+  }
+
+  private static boolean isFinished(HttpTypes.UploadResponse status) {
+    String state = status == null || status.getResults() == null
+      ? null
+      : status.getResults().getStatus();
+    return "R".equals(state) || "F".equals(state);
+  }
+
+  /** A product on a Protecode SC server */
+  private static final class Key {
+    private final String host;
+    private final int productId;
+
+    Key(String host, int productId) {
+      this.host = host;
+      this.productId = productId;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key && host.equals(((Key) other).host)
+        && productId == ((Key) other).productId;
+    }
+
+    @Override
+    public int hashCode() {
+      return host.hashCode() * 31 + productId;
+    }
+  }
+
+  /** A request other than a poll, sent once the budget allows */
+  private final class Request<T> {
+    final Supplier<CompletableFuture<T>> sender;
+    final CompletableFuture<T> result = new CompletableFuture<>();
+
+    Request(Supplier<CompletableFuture<T>> sender) {
+      this.sender = sender;
+    }
+
+    /** Runs on the scheduler, the budget has been taken */
+    void send() {
+      CompletableFuture<T> sent;
+      try {
+        sent = sender.get();
+      } catch (RuntimeException e) {
+        sent = new CompletableFuture<>();
+        sent.completeExceptionally(e);
+      }
+      CompletableFuture<T> call = sent;
+      result.whenComplete((value, error) -> {
+        if (result.isCancelled()) {
+          call.cancel(false);
+        }
+      });
+      call.whenComplete((value, error) -> scheduler.execute(() -> {
+        inFlight--;
+        if (error != null) {
+          result.completeExceptionally(
+            error instanceof CompletionException && error.getCause() != null
+              ? error.getCause()
+              : error
+          );
+        } else {
+          result.complete(value);
+        }
+        dispatch();
+      }));
+    }
+  }
+
+  private static final class Product {
+    final Key key;
+    final StatusRequest statusRequest;
+    final Backoff backoff;
+    final List<CompletableFuture<HttpTypes.UploadResponse>> waiters = new ArrayList<>();
+    int attempt = 0;
+    long dueAt;
+
+    Product(Key key, StatusRequest statusRequest, Backoff backoff) {
+      this.key = key;
+      this.statusRequest = statusRequest;
+      this.backoff = backoff;
+    }
+  }
+}
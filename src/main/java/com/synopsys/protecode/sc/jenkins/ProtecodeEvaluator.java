@@ -10,6 +10,7 @@
   *******************************************************************************/
 package com.synopsys.protecode.sc.jenkins;
 
+import com.synopsys.protecode.sc.jenkins.types.AggregateResult;
 import com.synopsys.protecode.sc.jenkins.types.FileResult;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,4 +35,18 @@ public class ProtecodeEvaluator {
       return false;
     }
   }
+
+  /**
+   * Evaluates the results of all packages of the build.
+   * @param results The results of the uploaded packages.
+   * @return false if any package has errors or vulns. Otherwise true
+   */
+  public static boolean evaluate(AggregateResult results) {
+    // Every package is evaluated, so that each one is logged
+    boolean verdict = true;
+    for (FileResult result : results.getResults()) {
+      verdict &= evaluate(result);
+    }
+    return verdict;
+  }
 }
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+
+import com.synopsys.protecode.sc.jenkins.types.BuildUploads;
+import com.synopsys.protecode.sc.jenkins.types.ScanHandle;
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+/**
+ * Runs protecodescAsync and protecodescAwait. The upload, the aborts and the report block for
+ * minutes, so they run on threads of the step's own pool like SynchronousNonBlockingStepExecution
+ * runs them, not on the shared Jenkins timer. The polls are made by the PollMultiplexer, in
+ * between no thread belongs to the step.
+ *
+ * The scans are kept in the serialized execution, so after a restart onResume polls them again
+ * until the original scan timeout.
+ */
+class ProtecodeScAsyncExecution extends StepExecution {
+
+  private static final long serialVersionUID = 1L;
+  private static final Logger LOGGER = Logger.getLogger(ProtecodeScAsyncExecution.class.getName());
+  /** Runs the blocking parts of the steps, a thread each while they run */
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool((runnable) -> {
+    Thread thread = new Thread(runnable, "protecode-async-step");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /** The upload options, null for protecodescAwait which is given the scans */
+  private final ProtecodeScSubmitStep submit;
+  private final ProtecodeScAwaitStep await;
+  /** The scans to wait for, null until the uploads have a response */
+  private volatile ScanHandle handle;
+  /** When the scan timeout passes, in milliseconds since the epoch */
+  private volatile long pollDeadline = 0;
+
+  private transient volatile ProtecodeScPlugin scanner = null;
+  /** The uploads and results of the scanner, set together with it */
+  private transient volatile BuildUploads uploads = null;
+  private transient volatile Future<?> task = null;
+  private transient volatile CompletableFuture<Void> polled = null;
+
+  ProtecodeScAsyncExecution(
+    StepContext context,
+    ProtecodeScSubmitStep submit,
+    ProtecodeScAwaitStep await
+  ) {
+    super(context);
+    this.submit = submit;
+    this.await = await;
+    this.handle = await.getScan();
+  }
+
+  @Override
+  public boolean start() throws Exception {
+    task = EXECUTOR.submit(submit != null ? this::submit : this::await);
+    return false;
+  }
+
+  @Override
+  public void stop(Throwable cause) throws Exception {
+    if (task != null) {
+      task.cancel(true);
+    }
+    if (polled != null) {
+      polled.cancel(false);
+    }
+    // Aborting waits for Protecode SC, which doesn't belong on the CPS thread
+    EXECUTOR.submit(() -> {
+      ProtecodeScPlugin running = scanner;
+      BuildUploads runningUploads = uploads;
+      if (running != null && runningUploads != null) {
+        try {
+          running.abortScans(getContext().get(Run.class), runningUploads);
+        } catch (Exception e) {
+          LOGGER.log(Level.WARNING, "Could not abort the scans: {0}", e.toString());
+        }
+      }
+      getContext().onFailure(cause);
+    });
+  }
+
+  @Override
+  public void onResume() {
+    if (handle == null) {
+      getContext().onFailure(new AbortException("Jenkins restarted while the files were "
+        + "uploaded to Protecode SC, the scan can't be resumed."));
+      return;
+    }
+    task = EXECUTOR.submit(() -> {
+      try {
+        getContext().get(TaskListener.class).getLogger().println("Resuming to wait for "
+          + handle.getScans().size() + " Protecode SC scans after a restart.");
+      } catch (Exception e) {
+        getContext().onFailure(e);
+        return;
+      }
+      await();
+    });
+  }
+
+  @Override
+  public String getStatus() {
+    return handle == null
+      ? "uploading files to Protecode SC"
+      : "waiting for " + handle.getScans().size() + " Protecode SC scans";
+  }
+
+  private void submit() {
+    try {
+      ProtecodeScPlugin uploader = submit.scanner();
+      BuildUploads submitted = new BuildUploads();
+      // Aborts the uploaded scans if the step is stopped during the upload
+      uploads = submitted;
+      scanner = uploader;
+      if (!uploader.submit(
+        getContext().get(Run.class),
+        getContext().get(FilePath.class),
+        getContext().get(TaskListener.class),
+        submitted
+      )) {
+        getContext().onSuccess(false);
+        return;
+      }
+      handle = uploader.handle(submitted.getResults());
+    } catch (InterruptedException e) {
+      // stop() has ended the step
+      Thread.currentThread().interrupt();
+      return;
+    } catch (Exception e) {
+      getContext().onFailure(e);
+      return;
+    }
+    await();
+  }
+
+  /** Takes up the scans of the handle and polls them */
+  private void await() {
+    try {
+      TaskListener listener = getContext().get(TaskListener.class);
+      if (handle == null) {
+        listener.error("No files were submitted to Protecode SC");
+        getContext().onSuccess(false);
+        return;
+      }
+      if (pollDeadline == 0) {
+        pollDeadline = System.currentTimeMillis()
+          + TimeUnit.MINUTES.toMillis(await.getScanTimeout());
+      }
+      ProtecodeScPlugin poller = await.scanner(handle);
+      BuildUploads scans = poller.resume(handle, listener);
+      uploads = scans;
+      scanner = poller;
+      if (!poller.readyToPoll(scans.getResults())) {
+        getContext().onSuccess(false);
+        return;
+      }
+      poll(poller, scans);
+    } catch (Exception e) {
+      getContext().onFailure(e);
+    }
+  }
+
+  /** Polls the scans, reports them when done or fails at the deadline */
+  private void poll(ProtecodeScPlugin poller, BuildUploads pending) {
+    CompletableFuture<Void> scans = poller.startPolling(pending.getResults());
+    polled = scans;
+    // The timer only notices the deadline, aborting the scans waits for Protecode SC
+    ScheduledFuture<?> timeout = Timer.get().schedule(() -> {
+      if (scans.cancel(false)) {
+        EXECUTOR.submit(() -> {
+          try {
+            poller.timedOut(getContext().get(Run.class), pending);
+            getContext().onSuccess(false);
+          } catch (Exception e) {
+            getContext().onFailure(e);
+          }
+        });
+      }
+    }, Math.max(0, pollDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    scans.whenCompleteAsync((nothing, error) -> {
+      timeout.cancel(false);
+      if (scans.isCancelled()) {
+        // Stopped or timed out, which ended the step already
+        return;
+      }
+      try {
+        getContext().get(TaskListener.class).getLogger()
+          .println("Received all results from Protecode SC");
+        getContext().onSuccess(poller.finish(getContext().get(Run.class), pending.getResults()));
+      } catch (Exception e) {
+        getContext().onFailure(e);
+      }
+    }, EXECUTOR);
+  }
+}
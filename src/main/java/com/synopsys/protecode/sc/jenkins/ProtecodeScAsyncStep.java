@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import jenkins.model.Jenkins;
+import lombok.Getter;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Pipeline step which scans like protecodesc, but doesn't hold a thread while Protecode SC scans.
+ * The files are uploaded on a background thread, after that the step waits only for the poll
+ * answers. The product ids are kept with the pipeline, so the step goes on polling after the
+ * controller restarts.
+ *
+ * The step is protecodescSubmit followed by protecodescAwait. It returns the build status as
+ * protecodesc computes it. Options it doesn't have are as protecodesc has them by default. It needs
+ * the workspace, so the executor of the node is held until the step ends. Only protecodescSubmit
+ * in the node and protecodescAwait outside of it free the executor while Protecode SC scans.
+ */
+public class ProtecodeScAsyncStep extends Step implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Getter private final String credentialsId;
+  @Getter private final String protecodeScGroup;
+  @Getter private String directoryToScan = "";
+  @Getter private boolean includeSubdirectories = false;
+  @Getter private String pattern = "";
+  @Getter private String includes = "";
+  @Getter private String excludes = "";
+  @Getter private boolean failIfVulns = true;
+  @Getter private boolean convertToSummary = false;
+  @Getter private int scanTimeout = ProtecodeScPlugin.DescriptorImpl.defaultTimeout;
+  @Getter private int uploadTimeout = ProtecodeScPlugin.DescriptorImpl.defaultUploadTimeout;
+  @Getter private boolean deleteFilesOnAbort = false;
+
+  @DataBoundConstructor
+  public ProtecodeScAsyncStep(String credentialsId, String protecodeScGroup) {
+    this.credentialsId = credentialsId;
+    this.protecodeScGroup = protecodeScGroup;
+  }
+
+  @DataBoundSetter
+  public void setDirectoryToScan(String directoryToScan) {
+    this.directoryToScan = directoryToScan;
+  }
+
+  @DataBoundSetter
+  public void setIncludeSubdirectories(boolean includeSubdirectories) {
+    this.includeSubdirectories = includeSubdirectories;
+  }
+
+  @DataBoundSetter
+  public void setPattern(String pattern) {
+    this.pattern = pattern;
+  }
+
+  @DataBoundSetter
+  public void setIncludes(String includes) {
+    this.includes = includes;
+  }
+
+  @DataBoundSetter
+  public void setExcludes(String excludes) {
+    this.excludes = excludes;
+  }
+
+  @DataBoundSetter
+  public void setFailIfVulns(boolean failIfVulns) {
+    this.failIfVulns = failIfVulns;
+  }
+
+  @DataBoundSetter
+  public void setConvertToSummary(boolean convertToSummary) {
+    this.convertToSummary = convertToSummary;
+  }
+
+  @DataBoundSetter
+  public void setScanTimeout(int scanTimeout) {
+    this.scanTimeout = scanTimeout;
+  }
+
+  @DataBoundSetter
+  public void setUploadTimeout(int uploadTimeout) {
+    this.uploadTimeout = uploadTimeout;
+  }
+
+  @DataBoundSetter
+  public void setDeleteFilesOnAbort(boolean deleteFilesOnAbort) {
+    this.deleteFilesOnAbort = deleteFilesOnAbort;
+  }
+
+  @Override
+  public StepExecution start(StepContext context) throws Exception {
+    return new ProtecodeScAsyncExecution(context, submitStep(), awaitStep());
+  }
+
+  /**
+   * @return The upload options of this step
+   */
+  ProtecodeScSubmitStep submitStep() {
+    ProtecodeScSubmitStep submit = new ProtecodeScSubmitStep(credentialsId, protecodeScGroup);
+    submit.setDirectoryToScan(directoryToScan);
+    submit.setIncludeSubdirectories(includeSubdirectories);
+    submit.setPattern(pattern);
+    submit.setIncludes(includes);
+    submit.setExcludes(excludes);
+    submit.setUploadTimeout(uploadTimeout);
+    submit.setDeleteFilesOnAbort(deleteFilesOnAbort);
+    return submit;
+  }
+
+  /**
+   * @return The polling and reporting options of this step, the scans are given to the execution
+   */
+  ProtecodeScAwaitStep awaitStep() {
+    ProtecodeScAwaitStep await = new ProtecodeScAwaitStep(null);
+    await.setFailIfVulns(failIfVulns);
+    await.setConvertToSummary(convertToSummary);
+    await.setScanTimeout(scanTimeout);
+    await.setDeleteFilesOnAbort(deleteFilesOnAbort);
+    return await;
+  }
+
+  @Extension
+  public static class DescriptorImpl extends StepDescriptor {
+
+    @Override
+    public Set<? extends Class<?>> getRequiredContext() {
+      return Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList(Run.class, FilePath.class, TaskListener.class))
+      );
+    }
+
+    @Override
+    public String getFunctionName() {
+      return "protecodescAsync";
+    }
+
+    @Override
+    public String getDisplayName() {
+      return "Protecode SC without holding a thread during the scan";
+    }
+
+    public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item context) {
+      return Jenkins.getInstance().getDescriptorByType(ProtecodeScPlugin.DescriptorImpl.class)
+        .doFillCredentialsIdItems(context);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+
+import com.synopsys.protecode.sc.jenkins.types.ScanHandle;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.Getter;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Pipeline step which waits for the scans of protecodescSubmit, reports them and evaluates them.
+ * No workspace is needed, so the step can run outside of a node and hold no executor while
+ * Protecode SC scans.
+ *
+ * The step returns the build status as protecodesc computes it.
+ */
+public class ProtecodeScAwaitStep extends Step implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** As returned by protecodescSubmit, null if nothing was submitted */
+  @Getter private final ScanHandle scan;
+  @Getter private boolean failIfVulns = true;
+  @Getter private boolean convertToSummary = false;
+  @Getter private int scanTimeout = ProtecodeScPlugin.DescriptorImpl.defaultTimeout;
+  @Getter private boolean deleteFilesOnAbort = false;
+
+  @DataBoundConstructor
+  public ProtecodeScAwaitStep(ScanHandle scan) {
+    this.scan = scan;
+  }
+
+  @DataBoundSetter
+  public void setFailIfVulns(boolean failIfVulns) {
+    this.failIfVulns = failIfVulns;
+  }
+
+  @DataBoundSetter
+  public void setConvertToSummary(boolean convertToSummary) {
+    this.convertToSummary = convertToSummary;
+  }
+
+  @DataBoundSetter
+  public void setScanTimeout(int scanTimeout) {
+    this.scanTimeout = scanTimeout;
+  }
+
+  @DataBoundSetter
+  public void setDeleteFilesOnAbort(boolean deleteFilesOnAbort) {
+    this.deleteFilesOnAbort = deleteFilesOnAbort;
+  }
+
+  @Override
+  public StepExecution start(StepContext context) throws Exception {
+    return new ProtecodeScAsyncExecution(context, null, this);
+  }
+
+  /**
+   * @param handle The scans to poll
+   * @return A new scanner which polls and reports like this step
+   */
+  ProtecodeScPlugin scanner(ScanHandle handle) {
+    ProtecodeScPlugin scanner = new ProtecodeScPlugin(
+      handle.getCredentialsId(),
+      handle.getProtecodeScGroup()
+    );
+    scanner.setFailIfVulns(failIfVulns);
+    scanner.setConvertToSummary(convertToSummary);
+    scanner.setScanTimeout(scanTimeout);
+    scanner.setDeleteFilesOnAbort(deleteFilesOnAbort);
+    return scanner;
+  }
+
+  @Extension
+  public static class DescriptorImpl extends StepDescriptor {
+
+    @Override
+    public Set<? extends Class<?>> getRequiredContext() {
+      return Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList(Run.class, TaskListener.class))
+      );
+    }
+
+    @Override
+    public String getFunctionName() {
+      return "protecodescAwait";
+    }
+
+    @Override
+    public String getDisplayName() {
+      return "Wait for the Protecode SC scans of protecodescSubmit";
+    }
+  }
+}
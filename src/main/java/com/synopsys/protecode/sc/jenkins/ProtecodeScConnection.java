@@ -14,9 +14,11 @@ import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredenti
 import com.synopsys.protecode.sc.jenkins.interfaces.ProtecodeScApi;
 import com.synopsys.protecode.sc.jenkins.interfaces.ProtecodeScServicesApi;
 import com.synopsys.protecode.sc.jenkins.utils.UtilitiesJenkins;
+import hudson.util.Secret;
 import java.net.URL;
 import java.util.Collections;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import okhttp3.*;
@@ -57,6 +59,48 @@ public class ProtecodeScConnection {
    * @return the backend to use while communicating to the server
    */
   public static ProtecodeScApi backend(String credentialsId, URL url, boolean checkCertificate) {
+    return backend(url, checkCertificate, () -> {
+      StandardUsernamePasswordCredentials credentials
+        = UtilitiesJenkins.getCredentials(url, credentialsId);
+
+      // Right now we can't provide credentials "as is" to protecode so we need to extract to
+      // contents
+      String protecodeScUser = credentials.getUsername();
+      String protecodeScPass = credentials.getPassword().toString();
+      return Credentials.basic(protecodeScUser, protecodeScPass);
+    });
+  }
+
+  /**
+   * Backend for an agent, which can't look up the credentials. The controller looks them up and
+   * sends them with the call.
+   * @param username The user in Protecode SC
+   * @param password The password of the user
+   * @param url The url which points to the protecode-sc instance.
+   * @param checkCertificate whether or not to check the server certificate.
+   * @return the backend to use while communicating to the server
+   */
+  public static ProtecodeScApi backend(
+    String username,
+    Secret password,
+    URL url,
+    boolean checkCertificate
+  ) {
+    return backend(
+      url,
+      checkCertificate,
+      () -> Credentials.basic(username, Secret.toString(password))
+    );
+  }
+
+  /**
+   * @param authorization Gives the value of the Authorization header for each request
+   */
+  private static ProtecodeScApi backend(
+    URL url,
+    boolean checkCertificate,
+    Supplier<String> authorization
+  ) {
     // HOW TO LOG
 // Leave these here for convenience of debugging. They bleed memory _badly_ though
 //    HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
@@ -68,18 +112,10 @@ public class ProtecodeScConnection {
       {
         Request originalRequest = chain.request();       
         
-        StandardUsernamePasswordCredentials credentials 
-          = UtilitiesJenkins.getCredentials(url, credentialsId);  
-
-        // Right now we can't provide credentials "as is" to protecode so we need to extract to
-        // contents
-        String protecodeScUser = credentials.getUsername();
-        String protecodeScPass = credentials.getPassword().toString();
-        
         Request.Builder builder = originalRequest.newBuilder()
           .header(
             "Authorization",
-            Credentials.basic(protecodeScUser, protecodeScPass)
+            authorization.get()
           )
           .addHeader("User-Agent", Configuration.CLIENT_NAME);
         
@@ -15,16 +15,37 @@ import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.HostnameRequirement;
-import com.synopsys.protecode.sc.jenkins.interfaces.Listeners.PollService;
-import com.synopsys.protecode.sc.jenkins.interfaces.Listeners.ResultService;
 import com.synopsys.protecode.sc.jenkins.interfaces.Listeners.ScanService;
+import com.synopsys.protecode.sc.jenkins.types.AgentConnection;
+import com.synopsys.protecode.sc.jenkins.types.AgentUpload;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
 import com.synopsys.protecode.sc.jenkins.types.HttpTypes.ScanResultResponse;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes.ScanState;
 import com.synopsys.protecode.sc.jenkins.types.HttpTypes.UploadResponse;
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import com.synopsys.protecode.sc.jenkins.types.AggregateResult;
+import com.synopsys.protecode.sc.jenkins.types.BuildUploads;
 import com.synopsys.protecode.sc.jenkins.types.FileResult;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.PackagingStats;
+import com.synopsys.protecode.sc.jenkins.types.PendingScan;
+import com.synopsys.protecode.sc.jenkins.types.ScanHandle;
+import com.synopsys.protecode.sc.jenkins.types.Sha1Sum;
 import com.synopsys.protecode.sc.jenkins.types.StreamRequestBody;
+import com.synopsys.protecode.sc.jenkins.types.UploadOutcome;
+import com.synopsys.protecode.sc.jenkins.types.ZipStreamRequestBody;
+import com.synopsys.protecode.sc.jenkins.utils.Backoff;
+import com.synopsys.protecode.sc.jenkins.utils.BandwidthLimiter;
+import com.synopsys.protecode.sc.jenkins.utils.Deduplicator;
+import com.synopsys.protecode.sc.jenkins.utils.GlobFilter;
+import com.synopsys.protecode.sc.jenkins.utils.ManifestPartitioner;
 import com.synopsys.protecode.sc.jenkins.utils.ReportBuilder;
+import com.synopsys.protecode.sc.jenkins.utils.ResumableUploader;
+import com.synopsys.protecode.sc.jenkins.utils.ScanDurations;
+import com.synopsys.protecode.sc.jenkins.utils.UploadProgress;
 import com.synopsys.protecode.sc.jenkins.utils.UtilitiesFile;
 import com.synopsys.protecode.sc.jenkins.utils.UtilitiesGeneral;
+import com.synopsys.protecode.sc.jenkins.utils.UtilitiesJenkins;
 import hudson.Extension;
 import hudson.ExtensionPoint;
 import hudson.FilePath;
@@ -36,15 +57,27 @@ import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 import javax.annotation.CheckForNull;
 import javax.servlet.ServletException;
 import jenkins.tasks.SimpleBuildStep;
@@ -52,6 +85,7 @@ import lombok.Getter;
 import lombok.Setter;
 import net.sf.json.JSONObject;
 import okhttp3.MediaType;
+import okhttp3.RequestBody;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.*;
 
@@ -67,10 +101,28 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
   private String protecodeScGroup; // TODO: Group can be an integer
   private String directoryToScan;
   private boolean includeSubdirectories;
+  private int discoveryParallelism;
   private String pattern; // Be carefull with this. 
+  private String includes;
+  private String excludes;
   private boolean convertToSummary;
   private boolean failIfVulns;
   private int scanTimeout;
+  private int uploadTimeout;
+  private boolean reuseUnchangedScans;
+  private int rescanAfterHours;
+  private boolean streamPackage;
+  // Boolean, so that a configuration saved before the option is told apart from false
+  private Boolean storeCompressedFiles;
+  private Integer compressionLevel;
+  private int packagingThreads;
+  private Boolean deduplicateFiles;
+  private int shards;
+  private Boolean reproduciblePackages;
+  private boolean scanFilesSeparately;
+  private boolean uploadFromAgent;
+  private boolean resumableUploads;
+  private boolean deleteFilesOnAbort;
 
   // transients for old conf
   private transient String filesToScanDirectory;
@@ -85,7 +137,10 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
   private static boolean storedDontCheckCertificate = true;
 
   // Used in the scan process
-  private FileResult result;
+  private transient String fingerprint = null;
+  private transient long scanTimestamp = 0;
+  /** True if the files were unchanged and the result of an earlier build was taken */
+  private transient boolean reused = false;
 
   // used for printing to the jenkins console
   private PrintStream log = null;
@@ -93,6 +148,8 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
 
   public static final String NO_ERROR = ""; // TODO: Use Optional
 
+  private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
   private static final Logger LOGGER = Logger.getLogger(ProtecodeScPlugin.class.getName());
 
   @DataBoundConstructor
@@ -103,11 +160,28 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
     this.credentialsId = credentialsId;
     this.protecodeScGroup = protecodeScGroup;
     this.includeSubdirectories = false;
+    this.discoveryParallelism = DescriptorImpl.defaultDiscoveryParallelism;
     this.directoryToScan = "";
     this.pattern = "";
+    this.includes = "";
+    this.excludes = "";
     this.convertToSummary = false;
     this.failIfVulns = true;
     this.scanTimeout = 10;
+    this.uploadTimeout = DescriptorImpl.defaultUploadTimeout;
+    this.reuseUnchangedScans = false;
+    this.rescanAfterHours = 24;
+    this.streamPackage = false;
+    this.storeCompressedFiles = DescriptorImpl.defaultStoreCompressedFiles;
+    this.compressionLevel = null;
+    this.packagingThreads = DescriptorImpl.defaultPackagingThreads;
+    this.deduplicateFiles = DescriptorImpl.defaultDeduplicateFiles;
+    this.shards = DescriptorImpl.defaultShards;
+    this.reproduciblePackages = DescriptorImpl.defaultReproduciblePackages;
+    this.scanFilesSeparately = false;
+    this.uploadFromAgent = false;
+    this.resumableUploads = false;
+    this.deleteFilesOnAbort = false;
   }
 
   /**
@@ -123,6 +197,31 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
       pattern = UtilitiesFile.ALL_FILES_REGEX_STRING;
     }
 
+    // Configurations saved before the upload timeout
+    if (uploadTimeout <= 0) {
+      uploadTimeout = DescriptorImpl.defaultUploadTimeout;
+    }
+
+    // Configurations saved before the packaging and discovery options
+    if (discoveryParallelism <= 0) {
+      discoveryParallelism = DescriptorImpl.defaultDiscoveryParallelism;
+    }
+    if (packagingThreads <= 0) {
+      packagingThreads = DescriptorImpl.defaultPackagingThreads;
+    }
+    if (shards <= 0) {
+      shards = DescriptorImpl.defaultShards;
+    }
+    if (storeCompressedFiles == null) {
+      storeCompressedFiles = DescriptorImpl.defaultStoreCompressedFiles;
+    }
+    if (deduplicateFiles == null) {
+      deduplicateFiles = DescriptorImpl.defaultDeduplicateFiles;
+    }
+    if (reproduciblePackages == null) {
+      reproduciblePackages = DescriptorImpl.defaultReproduciblePackages;
+    }
+
     // filesToScanDirectory -> directoryToScan
     if (filesToScanDirectory != null && directoryToScan == null) {
       this.directoryToScan = this.filesToScanDirectory;
@@ -175,23 +274,62 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
   @Override
   public void perform(Run<?, ?> run, FilePath workspace, Launcher launcher, TaskListener listener)
     throws InterruptedException, IOException {
-    // TODO add try - catch (Interrupted) to call abort scan in protecode sc (remember to throw the
-    // same exception upward)
     this.listener = listener;
-    doPerform(run, workspace);
+    BuildUploads uploads = new BuildUploads();
+    try {
+      doPerform(run, workspace, uploads);
+    } catch (InterruptedException e) {
+      abortScans(run, uploads);
+      throw e;
+    }
   }
 
   @Override
   public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
     BuildListener listener) throws InterruptedException, IOException {
-    // TODO add try - catch (Interrupted) to call abort scan in protecode sc (remember to throw the
-    // same exception upward)
     this.listener = listener;
-    return doPerform(build, build.getWorkspace());
+    BuildUploads uploads = new BuildUploads();
+    try {
+      return doPerform(build, build.getWorkspace(), uploads);
+    } catch (InterruptedException e) {
+      abortScans(build, uploads);
+      throw e;
+    }
+  }
+
+  /**
+   * @param uploads Gets the uploads and results of the build, the caller aborts them if the build
+   * is interrupted
+   */
+  public boolean doPerform(Run<?, ?> run, FilePath workspace, BuildUploads uploads)
+    throws IOException, InterruptedException {
+    if (!submit(run, workspace, uploads)) {
+      return false;
+    }
+    // start polling for reponses to scans
+    if (!reused && !poll(run, uploads)) {
+      // maybe we were interrupted or something failed, ending phase
+      return false;
+    }
+    return finish(run, uploads.getResults());
+  }
+
+  /**
+   * Finds the files and uploads them, or takes the result of an earlier build if the files are
+   * unchanged. Returns when the uploads have a response, the scans may still be running.
+   *
+   * @param uploads Gets the uploads and results of the build, the caller aborts them if the build
+   * is interrupted
+   * @return false if nothing was uploaded or the uploads failed
+   */
+  boolean submit(Run<?, ?> run, FilePath workspace, TaskListener listener, BuildUploads uploads)
+    throws IOException, InterruptedException {
+    this.listener = listener;
+    return submit(run, workspace, uploads);
   }
 
   // TODO: Mother of all too-much-doing methods. Find a way to make this better. really.
-  public boolean doPerform(Run<?, ?> run, FilePath workspace)
+  private boolean submit(Run<?, ?> run, FilePath workspace, BuildUploads uploads)
     throws IOException, InterruptedException {
     // TODO: Do not throw IOException
     log = listener.getLogger();
@@ -204,6 +342,12 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
       run.setResult(Result.FAILURE);
       return false;
     }
+    double buildLimit = getDescriptor().getBuildUploadBandwidthLimit();
+    uploads.getBandwidth().setBytesPerSecond(DescriptorImpl.bytesPerSecond(buildLimit));
+    if (buildLimit > 0 || ProtecodeScService.uploadBandwidth().isLimited()) {
+      log.println("Upload bandwidth: " + getDescriptor().getUploadBandwidthState()
+        + (buildLimit > 0 ? ", this build at most " + buildLimit + " MB/s" : ""));
+    }
 
     // TODO: Fix connection test. Eventually write an interceptor
 //    if (!UtilitiesGeneral.connectionOk(service.connectionOk())) {
@@ -219,8 +363,6 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
       log.println("The build will NOT fail if vulnurabilities are found.");
     }
 
-    result = null;
-
     @SuppressWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
     String checkedDirectoryToScan = (null != getDirectoryToScan()) ? getDirectoryToScan() : "";
 
@@ -228,49 +370,80 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
       log.println("Including subdirectories");
     }
 
-    @SuppressWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
-    Optional<FilePath> filesZip = UtilitiesFile.getFiles(
-      checkedDirectoryToScan,
-      workspace,
+    FilePath directory = UtilitiesFile.scanDirectory(checkedDirectoryToScan, workspace);
+    Optional<FileManifest> manifest = UtilitiesFile.findFiles(
+      directory,
       includeSubdirectories,
       UtilitiesFile.patternOrAll(pattern),
-      run,
+      GlobFilter.of(includes, excludes),
+      discoveryParallelism,
+      reuseUnchangedScans,
       listener
     );
 
     // TODO: Make a concentrated way of failing gracefully with a reason.
-    if (!filesZip.isPresent()) {
+    if (!manifest.isPresent() || manifest.get().isEmpty()) {
       // no files to scan, no failure
       listener.error("Error while fetching files. Perhaps there were none.");
       return false;
     }
 
-    long start = System.currentTimeMillis();
-    
-    // TODO: Combine checking optional to using it
-    // TODO: Perhaps this could be changed since we now zip all files.
-    log.println("Upload began at " + UtilitiesGeneral.timestamp() + ".");
-    // The optional is already checked.
-    sendFile(filesZip.get());
-    waitForUploadResponse(log);
-    try { // this is already checked
-      UtilitiesFile.removeFilePackage(filesZip.get());
-    } catch (Exception e) {
-      LOGGER.log(Level.FINE, "Error while deleting zip");
+    fingerprint = manifest.get().getFingerprint();
+    scanTimestamp = System.currentTimeMillis();
+    reused = false;
+    Optional<ScanFingerprintAction> reusable = reusableScan(run, manifest.get());
+    if (reusable.isPresent()) {
+      log.println("The files are identical to the ones scanned earlier, fetching the earlier result.");
+      FileResult previous = new FileResult(
+        reusable.get().getFilename(), reusable.get().getUploadResponse()
+      );
+      previous.setDuplicates(reusable.get().duplicates());
+      // Polled apart, the build's results get the earlier result only if it's still good
+      BuildUploads earlier = new BuildUploads(new AggregateResult(previous));
+      reused = poll(run, earlier) && !earlier.getResults().hasError();
+      if (reused) {
+        uploads.getResults().add(previous);
+        scanTimestamp = reusable.get().getScanTimestamp();
+      } else {
+        log.println("Could not fetch the earlier result, scanning the files again.");
+      }
     }
-    log.println("Upload of files completed at " + UtilitiesGeneral.timestamp() + ".");
 
-    long time = (System.currentTimeMillis() - start) / 1000;
-    LOGGER.log(Level.INFO, "Uploading files to protecode sc took: {0} seconds", time);
+    if (!reused) {
+      boolean uploaded = scanFilesSeparately
+        ? uploadFilesSeparately(uploads, directory, manifest.get(), run)
+        : uploadFiles(uploads, directory, manifest.get(), run);
+      if (!uploaded) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-    // start polling for reponses to scans
-    if (!poll(run)) {
-      // maybe we were interrupted or something failed, ending phase
-      return false;
-    }    
+  /**
+   * Reports the results once every scan has a result or an error, and evaluates them.
+   *
+   * @param results The results of the build
+   * @return The build status, false if vulnerabilities fail the build
+   */
+  boolean finish(Run<?, ?> run, AggregateResult results) throws IOException, InterruptedException {
+    // A scan can be reused only if it was uploaded as one package
+    if (fingerprint != null && !scanFilesSeparately && results.size() == 1
+      && !results.hasError()) {
+      FileResult result = results.getResults().get(0);
+      run.addAction(new ScanFingerprintAction(
+        fingerprint,
+        result.getFilename(),
+        result.getUploadResponse(),
+        result.getDuplicates(),
+        scanTimestamp,
+        getDescriptor().getProtecodeScHost(),
+        protecodeScGroup
+      ));
+    }
 
     // make results
-    ReportBuilder.report(result, listener, UtilitiesFile.reportsDirectory(run), run);
+    ReportBuilder.report(results, listener, UtilitiesFile.reportsDirectory(run), run);
 
     // summarise
     if (convertToSummary) {
@@ -279,12 +452,12 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
     }
 
     //evaluate, if verdict is false, there are vulns
-    boolean verdict = ProtecodeEvaluator.evaluate(result);    
+    boolean verdict = ProtecodeEvaluator.evaluate(results);    
     boolean buildStatus = false;
     
     if (failIfVulns) {
       if (!verdict) {
-        log.println(UtilitiesGeneral.buildReportString(result));
+        log.println(UtilitiesGeneral.buildReportString(results));
         listener.fatalError("Vulnerabilities found. Failing build.");
         run.setResult(Result.FAILURE);
       }
@@ -303,168 +476,724 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
     return buildStatus;
   }
 
+  /**
+   * Returns the scan of an earlier build, if it scanned the same files and is recent enough.
+   *
+   * @param run The current build
+   * @param manifest The files found for this build
+   * @return The earlier scan to reuse, or empty if the files must be scanned
+   */
+  private Optional<ScanFingerprintAction> reusableScan(Run<?, ?> run, FileManifest manifest) {
+    if (!reuseUnchangedScans || manifest.getFingerprint() == null) {
+      return Optional.empty();
+    }
+    Optional<ScanFingerprintAction> previous = ScanFingerprintAction.latest(run);
+    if (!previous.isPresent() || !manifest.getFingerprint().equals(previous.get().getFingerprint())) {
+      log.println("The files have changed since the last scan.");
+      return Optional.empty();
+    }
+    if (!previous.get().isOn(getDescriptor().getProtecodeScHost(), protecodeScGroup)) {
+      log.println("The last scan of these files was made to another Protecode SC host or group.");
+      return Optional.empty();
+    }
+    if (!previous.get().isFresh(rescanAfterHours)) {
+      log.println("The last scan of these files is older than " + rescanAfterHours
+        + " hours, scanning again.");
+      return Optional.empty();
+    }
+    return previous;
+  }
+
+  /**
+   * Packages the files, uploads the packages and waits for the upload responses. When streaming,
+   * the files are zipped on the agent during the upload and no zip file is written.
+   *
+   * With more than one shard the files are split into packages of about equal size. The packages
+   * are uploaded concurrently and scanned in parallel by Protecode SC.
+   *
+   * A zip isn't uploaded if Protecode SC already has a ready result for a package with the same
+   * SHA-1. A streamed package is hashed only while it's uploaded, so it's always uploaded.
+   *
+   * When uploading from the agent, the agent zips the packages while it uploads them.
+   *
+   * @param uploads Keeps the uploads of the build and gets their responses
+   * @return false if the files couldn't be packaged
+   */
+  private boolean uploadFiles(
+    BuildUploads uploads,
+    FilePath directory,
+    FileManifest manifest,
+    Run<?, ?> run
+  ) throws IOException, InterruptedException {
+    long start = System.currentTimeMillis();
+    List<FileManifest> packages = ManifestPartitioner.partition(
+      UtilitiesFile.withoutPackages(manifest, run),
+      Math.min(shards, Configuration.MAX_REQUESTS_TO_PROTECODE)
+    );
+    if (packages.size() > 1) {
+      log.println("Uploading the files in " + packages.size() + " packages of about equal size.");
+    }
+
+    Map<String, PackagingStats> packagingStats = new HashMap<>();
+    Map<String, ZipStreamRequestBody> streamed = new HashMap<>();
+    List<FilePath> zips = new ArrayList<>();
+    List<AgentUpload> agentUploads = new ArrayList<>();
+    for (int i = 0; i < packages.size(); i++) {
+      FilePath filesZip = directory.child(packages.size() == 1
+        ? UtilitiesFile.packageName(run)
+        : UtilitiesFile.shardName(run, i));
+
+      if (uploadFromAgent) {
+        agentUploads.add(
+          new AgentUpload(filesZip.getName(), filesZip.getRemote(), packages.get(i), true)
+        );
+      } else if (streamPackage) {
+        log.println("Upload of " + filesZip.getName() + " began at " + UtilitiesGeneral.timestamp()
+          + ", packaging while uploading.");
+        ZipStreamRequestBody body = new ZipStreamRequestBody(
+          OCTET_STREAM, directory, packages.get(i), packagingOptions()
+        );
+        streamed.put(filesZip.getRemote(), body);
+        sendFile(
+          uploads,
+          filesZip.getName(),
+          filesZip.getRemote(),
+          body,
+          () -> packageSha1(body.getStats())
+        );
+      } else {
+        Optional<PackagingStats> packaged = UtilitiesFile.packageFiles(
+          directory, packages.get(i), packagingOptions(), filesZip.getName(), listener
+        );
+        if (!packaged.isPresent()) {
+          // The packages sent already are read until their uploads are stopped
+          uploads.cancel();
+          removeFilePackages(zips);
+          return false;
+        }
+        zips.add(filesZip);
+        packagingStats.put(filesZip.getRemote(), packaged.get());
+        Optional<Sha1Sum> sha1 = packageSha1(packaged.get());
+        if (sha1.isPresent()
+          && addExistingResult(uploads, filesZip, sha1.get(), packaged.get())) {
+          continue;
+        }
+        log.println("Upload of " + filesZip.getName() + " began at " + UtilitiesGeneral.timestamp()
+          + ".");
+        sendFile(uploads, filesZip, sha1);
+      }
+    }
+    if (!agentUploads.isEmpty()
+      && !uploadFromAgent(uploads, directory, agentUploads, packagingStats)) {
+      return false;
+    }
+    // Cancels the uploads on a timeout, so that none of them reads the zips any more
+    boolean responded = waitForUploadResponse(uploads, packages.size(), run);
+    removeFilePackages(zips);
+    if (!responded) {
+      return false;
+    }
+    streamed.forEach((resultName, body) -> {
+      if (body.getStats() != null) {
+        log.println(body.getStats().summary());
+        packagingStats.put(resultName, body.getStats());
+      }
+    });
+    // The duplicates weren't uploaded, they get the result of the packaged copy
+    packagingStats.forEach((resultName, stats) -> uploads.getResults().get(resultName).ifPresent(
+      (result) -> result.setDuplicates(stats.getDuplicates())
+    ));
+    log.println("Upload of files completed at " + UtilitiesGeneral.timestamp() + ".");
+    recordUploadThroughput(uploads, run);
+
+    long time = (System.currentTimeMillis() - start) / 1000;
+    LOGGER.log(Level.INFO, "Uploading files to protecode sc took: {0} seconds", time);
+    return true;
+  }
+
+  /**
+   * Uploads every file as its own product instead of packaging them. The products are scanned in
+   * parallel, a slow file delays only its own result and every result is about one file. All
+   * uploads are queued at once, the http client sends at most MAX_REQUESTS_TO_PROTECODE at a time.
+   * Of identical files only one is uploaded, if duplicates are left out.
+   *
+   * @param uploads Keeps the uploads of the build and gets their responses
+   * @return false if the duplicates couldn't be looked for
+   */
+  private boolean uploadFilesSeparately(
+    BuildUploads uploads,
+    FilePath directory,
+    FileManifest manifest,
+    Run<?, ?> run
+  ) throws IOException, InterruptedException {
+    long start = System.currentTimeMillis();
+    FileManifest files = UtilitiesFile.withoutPackages(manifest, run);
+    Map<String, List<String>> duplicates = Collections.emptyMap();
+    if (deduplicateFiles) {
+      try {
+        duplicates = UtilitiesFile.findDuplicates(directory, files);
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Exception while looking for identical files: {0}",
+          e.getMessage());
+        listener.error("Error while reading files from: " + directory.getName());
+        return false;
+      }
+    }
+    FileManifest unique = Deduplicator.withoutDuplicates(files, duplicates);
+    if (unique.size() < files.size()) {
+      log.println((files.size() - unique.size()) + " files are identical to other files and are "
+        + "not uploaded.");
+    }
+    log.println("Uploading " + unique.size() + " files separately, "
+      + Configuration.MAX_REQUESTS_TO_PROTECODE + " at a time, began at "
+      + UtilitiesGeneral.timestamp() + ".");
+
+    List<AgentUpload> agentUploads = new ArrayList<>();
+    for (FileManifest.Entry entry : unique.getEntries()) {
+      FilePath file = directory.child(entry.getRelativePath());
+      if (uploadFromAgent) {
+        agentUploads.add(new AgentUpload(
+          file.getName(),
+          entry.getRelativePath(),
+          new FileManifest(Collections.singletonList(entry)),
+          false
+        ));
+      } else {
+        RequestBody body = new StreamRequestBody(OCTET_STREAM, file);
+        sendFile(uploads, file.getName(), entry.getRelativePath(), body, Optional::empty);
+      }
+    }
+    if (!agentUploads.isEmpty()
+      && !uploadFromAgent(uploads, directory, agentUploads, new HashMap<>())) {
+      return false;
+    }
+    if (!waitForUploadResponse(uploads, unique.size(), run)) {
+      return false;
+    }
+    for (FileResult result : uploads.getResults().getResults()) {
+      result.setSingleFile(true);
+      result.setDuplicates(duplicates);
+    }
+    log.println("Upload of files completed at " + UtilitiesGeneral.timestamp() + ".");
+    recordUploadThroughput(uploads, run);
+
+    long time = (System.currentTimeMillis() - start) / 1000;
+    LOGGER.log(Level.INFO, "Uploading files to protecode sc took: {0} seconds", time);
+    return true;
+  }
+
+  /**
+   * Lets the agent make the uploads with an http client of its own. The files don't go through
+   * the controller, only the upload responses come back. Returns when all uploads are done.
+   *
+   * @param buildUploads Gets the upload responses
+   * @param packagingStats Gets the figures of the packages, keyed by the result name
+   * @return false if the agent couldn't be given the connection or couldn't be reached
+   */
+  private boolean uploadFromAgent(
+    BuildUploads buildUploads,
+    FilePath directory,
+    List<AgentUpload> uploads,
+    Map<String, PackagingStats> packagingStats
+  ) throws InterruptedException {
+    AgentConnection connection;
+    try {
+      URL host = new URL(getDescriptor().getProtecodeScHost());
+      StandardUsernamePasswordCredentials credentials
+        = UtilitiesJenkins.getCredentials(host, credentialsId);
+      if (credentials == null) {
+        listener.error("Cannot find the credentials for Protecode SC");
+        return false;
+      }
+      connection = new AgentConnection(
+        host,
+        !getDescriptor().isDontCheckCert(),
+        credentials.getUsername(),
+        credentials.getPassword(),
+        protecodeScGroup
+      );
+    } catch (MalformedURLException e) {
+      listener.error("Cannot read Protecode SC URL, please make sure it has been set in the Jenkins"
+        + " configuration page.");
+      return false;
+    }
+
+    log.println("Upload of " + uploads.size() + " packages or files from the agent began at "
+      + UtilitiesGeneral.timestamp() + ".");
+    List<UploadOutcome> outcomes;
+    try {
+      outcomes = UtilitiesFile.uploadFromAgent(directory, uploads, packagingOptions(), connection);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Exception while uploading from the agent: {0}", e.getMessage());
+      listener.error("Error while uploading files from the agent: " + e.getMessage());
+      return false;
+    }
+    for (UploadOutcome outcome : outcomes) {
+      if (outcome.getStats() != null) {
+        log.println(outcome.getStats().summary());
+        packagingStats.put(outcome.getResultName(), outcome.getStats());
+      }
+      if (outcome.getError() != null) {
+        log.println(outcome.getError());
+      }
+      addUploadResponse(
+        buildUploads.getResults(),
+        log,
+        outcome.getResultName(),
+        outcome.getResponse(),
+        outcome.getError() == null ? NO_ERROR : outcome.getError(),
+        packageSha1(outcome.getStats())
+      );
+    }
+    return true;
+  }
+
+  /**
+   * Uses the result Protecode SC already has for a package with the same SHA-1, if it's ready.
+   * The package is then neither uploaded nor polled.
+   *
+   * @param uploads Gets the result
+   * @param zip The package
+   * @param sha1 SHA-1 of the package
+   * @param stats Figures of the packaging, for the files left out of the package
+   * @return true if a ready result was found and added to the results
+   */
+  private boolean addExistingResult(
+    BuildUploads uploads,
+    FilePath zip,
+    Sha1Sum sha1,
+    PackagingStats stats
+  ) {
+    Optional<ScanResultResponse> existing = service().existingScanResult(sha1.toString());
+    if (!existing.isPresent() || existing.get().getResults() == null
+      || !"R".equals(existing.get().getResults().getStatus())) {
+      return false;
+    }
+    HttpTypes.Results found = existing.get().getResults();
+    ScanState state = new ScanState();
+    state.setId(found.getId());
+    state.setProduct_id(found.getId());
+    state.setSha1sum(found.getSha1sum());
+    state.setStatus(found.getStatus());
+    UploadResponse response = new UploadResponse();
+    response.setMeta(new HttpTypes.Meta(200));
+    response.setResults(state);
+
+    FileResult result = new FileResult(zip.getRemote(), response);
+    // The duplicates must be known before the result is read
+    result.setDuplicates(stats.getDuplicates());
+    result.setResultResponse(existing.get());
+    uploads.getResults().add(result);
+    log.println("Protecode SC has already scanned a package identical to " + zip.getName()
+      + ", using its result instead of uploading.");
+    return true;
+  }
+
+  private static Optional<Sha1Sum> packageSha1(@CheckForNull PackagingStats stats) {
+    return Optional.ofNullable(stats).map(PackagingStats::getSha1).map(Sha1Sum::new);
+  }
+
+  private void removeFilePackages(List<FilePath> zips) {
+    for (FilePath zip : zips) {
+      try {
+        UtilitiesFile.removeFilePackage(zip);
+      } catch (Exception e) {
+        LOGGER.log(Level.FINE, "Error while deleting zip");
+      }
+    }
+  }
+
+  private PackagingOptions packagingOptions() {
+    PackagingOptions options = new PackagingOptions();
+    if (compressionLevel != null) {
+      // A pipeline isn't validated by the form, Deflater takes only these levels
+      options.setCompressionLevel(
+        Math.max(Deflater.NO_COMPRESSION, Math.min(compressionLevel, Deflater.BEST_COMPRESSION))
+      );
+    }
+    options.setStoreCompressed(storeCompressedFiles);
+    options.setThreads(Math.min(packagingThreads, Configuration.MAX_PACKAGING_THREADS));
+    options.setDeduplicate(deduplicateFiles);
+    options.setReproducible(reproduciblePackages);
+    return options;
+  }
+
   /**
    * Called by the lamdas given to upload rest calls
    *
+   * @param results The results of the build which made the upload
    * @param response The responses fetched from Protecode SC
+   * @param sha1 SHA-1 of the package as it was written, empty if not known
    */
-  private void addUploadResponse(PrintStream log, String name, UploadResponse response, String error) {
+  private static void addUploadResponse(
+    AggregateResult results,
+    PrintStream log,
+    String name,
+    UploadResponse response,
+    String error,
+    Optional<Sha1Sum> sha1
+  ) {
     // TODO: get rid of log
-    // TODO: compare the sha1sum and send again if incorrect
-    if (NO_ERROR.equals(error)) {
-      result = new FileResult(name, response);
+    Optional<String> uploaded = Optional.ofNullable(response)
+      .map(UploadResponse::getResults)
+      .map(ScanState::getSha1sum);
+    if (NO_ERROR.equals(error) && sha1.isPresent() && uploaded.isPresent()
+      && !sha1.get().toString().equalsIgnoreCase(uploaded.get())) {
+      // The package was corrupted on the way, its result would be of the wrong files
+      String mismatch = "The package " + name + " has the SHA-1 " + uploaded.get()
+        + " in Protecode SC but " + sha1.get() + " was uploaded.";
+      log.println(mismatch);
+      results.add(new FileResult(name, mismatch));
+    } else if (NO_ERROR.equals(error)) {
+      results.add(new FileResult(name, response));
     } else {
       // TODO, if en error which will stop the build from happening we should stop the build.     
-      result = new FileResult(name, error);
+      results.add(new FileResult(name, error));
     }
   }
 
-  private void sendFile(FilePath file) throws IOException, InterruptedException {
-    LOGGER.log(Level.FINE, "Sending file: {0}", file.getRemote());
-    service().scan(
-      protecodeScGroup,
-      file.getName(),
-      new StreamRequestBody(
-        MediaType.parse("application/octet-stream"),
-        file
-      ),
-      new ScanService() {
-        @Override
-        public void processUploadResult(UploadResponse result) {
-          addUploadResponse(log, file.getRemote(), result, NO_ERROR);
+  private void sendFile(BuildUploads uploads, FilePath file, Optional<Sha1Sum> sha1)
+    throws IOException, InterruptedException {
+    if (resumableUploads) {
+      LOGGER.log(Level.FINE, "Sending file in chunks: {0}", file.getRemote());
+      uploads.add(service().scanResumable(
+        protecodeScGroup,
+        file.getName(),
+        new ResumableUploader.Source() {
+          @Override
+          public long size() throws IOException, InterruptedException {
+            return file.length();
+          }
+
+          @Override
+          public InputStream openAt(long offset) throws IOException, InterruptedException {
+            return file.readFromOffset(offset);
+          }
+        },
+        uploads.getBandwidth(),
+        uploads.getProgress(),
+        uploadListener(uploads, file.getRemote(), () -> sha1)
+      ));
+    } else {
+      RequestBody body = new StreamRequestBody(OCTET_STREAM, file);
+      sendFile(uploads, file.getName(), file.getRemote(), body, () -> sha1);
+    }
+  }
+
+  /**
+   * @param uploads Keeps the upload to cancel it, and gets the response
+   * @param uploadName The name of the file in Protecode SC
+   * @param resultName The name of the file for the result
+   * @param body The content to upload
+   * @param sha1 SHA-1 of the uploaded package, asked for once the response has arrived. A
+   * streamed package is hashed while it's uploaded.
+   */
+  private void sendFile(
+    BuildUploads uploads,
+    String uploadName,
+    String resultName,
+    RequestBody body,
+    Supplier<Optional<Sha1Sum>> sha1
+  ) {
+    LOGGER.log(Level.FINE, "Sending file: {0}", resultName);
+    uploads.add(
+      service().scan(
+        protecodeScGroup,
+        uploadName,
+        body,
+        uploads.getBandwidth(),
+        uploads.getProgress(),
+        uploadListener(uploads, resultName, sha1)
+      )
+    );
+  }
+
+  /**
+   * @param uploads The uploads of the build, the response is added to their results
+   */
+  private ScanService uploadListener(
+    BuildUploads uploads,
+    String resultName,
+    Supplier<Optional<Sha1Sum>> sha1
+  ) {
+    PrintStream buildLog = log;
+    ProtecodeScService serv = service();
+    return new ScanService() {
+      @Override
+      public void processUploadResult(UploadResponse result) {
+        if (uploads.isCancelled()) {
+          abortLateUpload(serv, resultName, result);
+          return;
         }
+        addUploadResponse(uploads.getResults(), buildLog, resultName, result, NO_ERROR, sha1.get());
+      }
 
-        @Override
-        public void setError(String reason) {
-          // TODO: use Optional
-          log.println(reason);
-          // TODO: Maybe use listener.error to stop writing for more results if we get error 
-          // perhaps?
-          addUploadResponse(log, file.getRemote(), null, reason);
+      @Override
+      public void setError(String reason) {
+        if (uploads.isCancelled()) {
+          return;
         }
+        // TODO: use Optional
+        buildLog.println(reason);
+        // TODO: Maybe use listener.error to stop writing for more results if we get error 
+        // perhaps?
+        addUploadResponse(uploads.getResults(), buildLog, resultName, null, reason,
+          Optional.empty());
       }
-    );
+    };
   }
   
   /**
-   * TODO clean up depth, move logic to other methods. This is staggeringly awful.
+   * Aborts the scan of an upload which was answered after the uploads of the build were cancelled.
+   * The build doesn't wait for the product any more, so its scan would only take server time.
+   */
+  private void abortLateUpload(ProtecodeScService serv, String resultName, UploadResponse result) {
+    if (result == null || result.getResults() == null) {
+      return;
+    }
+    int productId = result.getResults().getProduct_id();
+    LOGGER.log(Level.INFO, "Aborting the scan of {0}, uploaded after the build stopped waiting",
+      resultName);
+    CompletableFuture<HttpTypes.Meta> abort = serv.abortScanAsync(productId);
+    if (deleteFilesOnAbort) {
+      abort = abort.thenCompose((meta) -> serv.deleteFilesAsync(productId));
+    }
+    abort.whenComplete((meta, error) -> {
+      if (error != null) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        LOGGER.log(Level.WARNING, "Could not abort the scan of {0}: {1}",
+          new Object[] {resultName, cause.getMessage()});
+      }
+    });
+  }
+
+  /**
+   * Waits until every uploaded file has a scan result or an error, at most the scan timeout. The
+   * polling runs on the ScanPoller, the build thread only waits.
    *
-   * @param listener
+   * @param uploads The uploads whose results are polled, aborted if the timeout passes
+   * @return false if a result has an error already or the timeout passed
+   * @throws InterruptedException if the build is interrupted, the polling is stopped then
    */
-  private boolean poll(Run<?, ?> run) {
-    if (result.hasError()) {
+  private boolean poll(Run<?, ?> run, BuildUploads uploads) throws InterruptedException {
+    if (!readyToPoll(uploads.getResults())) {
+      return false;
+    }
+    CompletableFuture<Void> polled = startPolling(uploads.getResults());
+    try {
+      // TODO: Make better timeout, which encapsulates the whole step
+      polled.get(this.scanTimeout, TimeUnit.MINUTES);
+    } catch (TimeoutException e) {
+      polled.cancel(false);
+      timedOut(run, uploads);
+      return false;
+    } catch (InterruptedException e) {
+      polled.cancel(false);
+      throw e;
+    } catch (ExecutionException e) {
+      // The polls complete only normally, every failure is an error of its result
+      LOGGER.log(Level.WARNING, "Polling failed: {0}", e.getMessage());
+      return false;
+    }
+    log.println("Received all results from Protecode SC");
+    return true;
+  }
+
+  /**
+   * @return false if an upload failed, there is nothing to poll then
+   */
+  boolean readyToPoll(AggregateResult results) {
+    if (results.hasError()) {
       log.println("No results found. Perhaps upload was not succesfull.");
       return false;
     }
-    // TODO: Make better timeout, which encapsulates the whole step
-    long endAt = System.currentTimeMillis() + ((long)this.scanTimeout * 60L * 1000L);
-    // use shortened word to distinguish from possibly null service    
-    ProtecodeScService serv = service();
     log.println("Fetching results from Protecode SC");
-    do {
-      if (System.currentTimeMillis() > endAt) {
-        listener.error("Timeout while fetching files");
-        run.setResult(Result.FAILURE);
-        return false;
-      }      
-      if (!result.hasError()) { // if we got an error from file upload        
-        // TODO: Add check if the result was never reached
-        if (!result.hasScanResponse()) {  // if this return true, we can ignore the fileAndResult
-          if (result.uploadHTTPStatus() == 200) {
-            if ("R".equals(result.getState())) {
-              if (!result.isResultBeingFetched()) {
-                result.setResultBeingFetched(true);
-                serv.scanResult(
-                  result.getUploadResponse().getResults().getSha1sum(),
-                  new ResultService() {
-                  @Override
-                  public void setScanResult(ScanResultResponse scanResult) {
-                    log.println("Received a result for file: " + result.getFilename());
-                    result.setResultResponse(scanResult);
-                  }
-
-                  @Override
-                  public void setError(String reason) {
-                    log.println("Received Protecode SC scan result ERROR for file: " + result.getFilename());
-                    result.setError(reason);
-                  }
-                }
-                );
-              }
-            } else {
-              serv.poll(
-                // TODO: Use pretty annotation in type "product_id"
-                result.getUploadResponse().getResults().getProduct_id(),
-                new PollService() {
-                @Override
-                public void setScanStatus(UploadResponse status) {
-                  result.setUploadResponse(status);
-                }
-
-                @Override
-                public void setError(String reason) {
-                  log.println("scan status ERROR: " + result.getFilename() + ": " + result.getState() + ": " + reason);
-                  result.setError(reason);
-                }
-              }
-              );
-            }
-          } else {
-            listener.error("Status code for file upload: '" + result.getFilename()
-              + "' was " + result.uploadHTTPStatus() + ". No results to fetch.");
-          }
-        }
-      }
-      try {
-        Thread.sleep(500); // we don't want to overload the network with bulk requests
-      } catch (InterruptedException ex) {
-        // Do nothing. Maybe the build has been canceled.
-      }
+    return true;
+  }
 
+  /**
+   * @return Completes when every uploaded file has a scan result or an error. Cancelling it stops
+   * the polling.
+   */
+  CompletableFuture<Void> startPolling(AggregateResult results) {
+    DescriptorImpl descriptor = getDescriptor();
+    ScanPoller poller = new ScanPoller(
+      service(),
+      new Backoff(
+        TimeUnit.SECONDS.toMillis(descriptor.getPollInitialDelay()),
+        TimeUnit.SECONDS.toMillis(descriptor.getPollMaxInterval()),
+        Configuration.POLL_BACKOFF_FACTOR,
+        Configuration.POLL_JITTER
+      ),
+      log
+    );
+    return poller.poll(results.getResults());
+  }
 
-      if (allNotReady()) {
-        try {
-          Thread.sleep(15 * 1000);
-        } catch (InterruptedException e) {
-          return false;
+  void timedOut(Run<?, ?> run, BuildUploads uploads) {
+    listener.error("Timeout while fetching files");
+    run.setResult(Result.FAILURE);
+    abortScans(run, uploads);
+  }
+
+  /**
+   * Aborts the scans of the build which Protecode SC is still running, so that other builds get
+   * the server time. Waits for the answers at most ABORT_TIMEOUT_SECONDS, and stores the server
+   * time reclaimed with the build. The uploads still in flight are cancelled, a scan whose upload
+   * is answered anyway is aborted when the answer arrives.
+   *
+   * @param uploads The uploads and results of the build
+   */
+  void abortScans(Run<?, ?> run, BuildUploads uploads) {
+    uploads.cancel();
+    List<FileResult> scanning = uploads.getResults().getResults().stream()
+      .filter(ProtecodeScPlugin::isScanning)
+      .collect(Collectors.toList());
+    if (scanning.isEmpty()) {
+      return;
+    }
+    ProtecodeScService serv = service();
+    if (serv == null) {
+      return;
+    }
+    log.println("Aborting " + scanning.size() + " scans on Protecode SC");
+    long now = System.currentTimeMillis();
+    List<CompletableFuture<FileResult>> aborts = new ArrayList<>();
+    for (FileResult result : scanning) {
+      int productId = result.getUploadResponse().getResults().getProduct_id();
+      CompletableFuture<HttpTypes.Meta> abort = serv.abortScanAsync(productId);
+      if (deleteFilesOnAbort) {
+        abort = abort.thenCompose((meta) -> serv.deleteFilesAsync(productId));
+      }
+      aborts.add(abort.handle((meta, error) -> {
+        if (error != null) {
+          Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+          log.println("Could not abort the scan of " + result.getFilename() + ": "
+            + cause.getMessage());
+          return null;
         }
+        return result;
+      }));
+    }
+    try {
+      CompletableFuture.allOf(aborts.toArray(new CompletableFuture<?>[aborts.size()]))
+        .get(Configuration.ABORT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      LOGGER.log(Level.WARNING, "Aborting scans didn't finish: {0}", e.toString());
+    }
+
+    int aborted = 0;
+    long scanned = 0;
+    long reclaimed = 0;
+    ScanDurations durations = ScanPoller.scanDurations();
+    for (CompletableFuture<FileResult> abort : aborts) {
+      FileResult result = abort.getNow(null);
+      if (result == null) {
+        continue;
       }
-    } while (allNotReady());
-    log.println("Received all results from Protecode SC");
-    return true;
+      result.setError("The scan of " + result.getFilename() + " was aborted");
+      long elapsed = result.getPolledSince() > 0 ? now - result.getPolledSince() : 0;
+      long remaining = durations.remaining(elapsed);
+      reclaimed = reclaimed < 0 || remaining < 0 ? -1 : reclaimed + remaining;
+      scanned += elapsed;
+      aborted++;
+    }
+    if (aborted > 0) {
+      ScanAbortAction abortAction = new ScanAbortAction(aborted, scanned, reclaimed);
+      log.println(abortAction.getSummary());
+      run.addAction(abortAction);
+    }
+  }
+
+  /**
+   * @return True if the product was uploaded and Protecode SC hasn't finished scanning it
+   */
+  private static boolean isScanning(FileResult result) {
+    return !result.hasScanResponse()
+      && result.getUploadResponse() != null
+      && result.uploadHTTPStatus() == 200
+      && !"R".equals(result.getState())
+      && !"F".equals(result.getState());
   }
 
   /**
-   * Simple check to determine does every scan have a result or an erro
-   * @return true if all results have been fetched
+   * @param results The results of the build
+   * @return The scans of the build, to poll them later or after a restart
+   */
+  ScanHandle handle(AggregateResult results) {
+    ArrayList<PendingScan> pending = new ArrayList<>();
+    results.getResults().forEach((result) -> pending.add(PendingScan.of(result)));
+    return new ScanHandle(credentialsId, protecodeScGroup, pending, fingerprint, scanTimestamp);
+  }
+
+  /**
+   * Takes up the scans of a handle, to poll them and finish the build.
+   *
+   * @return The scans of the handle, without uploads in flight
    */
-  private boolean allNotReady() {
-    return !result.hasScanResponse();
+  BuildUploads resume(ScanHandle handle, TaskListener listener) {
+    this.listener = listener;
+    this.log = listener.getLogger();
+    this.fingerprint = handle.getFingerprint();
+    this.scanTimestamp = handle.getScanTimestamp();
+    AggregateResult results = new AggregateResult();
+    handle.getScans().forEach((scan) -> results.add(scan.toResult()));
+    return new BuildUploads(results);
   }
 
   /**
-   * Waits until all upload results are in. Returns only then.
+   * Waits until all upload results are in, at most the upload timeout, and prints the progress of
+   * the uploads meanwhile. Returns as soon as the last response arrives.
    *
+   * @param uploads The uploads of the build, cancelled if the timeout passes
    * @param fileCount How many files were uploaded
-   * @param log for printing to Jenkins build console.
+   * @return false if the timeout passed, the build is failed then
+   * @throws InterruptedException if the build is interrupted
    */
-  private void waitForUploadResponse(PrintStream log) {
-    boolean waitForResponses = true;
-    // TODO: Add timeout since some files get no reponse from protecode
-    while (waitForResponses) {
+  private boolean waitForUploadResponse(BuildUploads uploads, int fileCount, Run<?, ?> run)
+    throws InterruptedException {
+    UploadProgress progress = uploads.getProgress();
+    // Packages Protecode SC already had are in the results without an upload
+    CompletableFuture<Void> responded = uploads.getResults().sizeReached(fileCount);
+    long interval = TimeUnit.SECONDS.toMillis(Configuration.UPLOAD_PROGRESS_INTERVAL_SECONDS);
+    long endAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(uploadTimeout);
+    while (true) {
+      long left = endAt - System.currentTimeMillis();
+      if (left <= 0) {
+        uploads.cancel();
+        listener.error("Timeout while uploading files, " + uploads.getResults().size() + " of "
+          + fileCount + " uploads got a response in " + uploadTimeout + " minutes.");
+        run.setResult(Result.FAILURE);
+        return false;
+      }
       try {
-        Thread.sleep(30 * 1000);
-        // TODO: remove print after testing
-        if (result != null) {
-          waitForResponses = false;
+        responded.get(Math.min(interval, left), TimeUnit.MILLISECONDS);
+        return true;
+      } catch (TimeoutException e) {
+        if (progress.changedSinceReport()) {
+          log.println(progress.report());
         }
-      } catch (InterruptedException ie) {
-        waitForResponses = false;
-        log.println("Interrupted while waiting for upload responses from Protecode SC");
+      } catch (ExecutionException e) {
+        // Completed only normally
+        return true;
       }
     }
   }
 
+  /**
+   * Prints how fast the uploads of the build went and stores it with the build.
+   */
+  private void recordUploadThroughput(BuildUploads uploads, Run<?, ?> run) {
+    UploadProgress progress = uploads.getProgress();
+    if (progress.getSent() > 0) {
+      UploadThroughputAction throughput = UploadThroughputAction.of(progress);
+      log.println(throughput.getSummary());
+      run.addAction(throughput);
+    }
+  }
+
   @Override
   public DescriptorImpl getDescriptor() {
     return (DescriptorImpl) super.getDescriptor();
@@ -480,7 +1209,28 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
     /** Read from jelly */
     public static final int defaultTimeout = 10;
     /** Read from jelly */
+    public static final int defaultUploadTimeout = 60;
+    /** Read from jelly */
     public static final boolean defaultFailIfVulns = true;
+    /** Read from jelly */
+    public static final int defaultDiscoveryParallelism = 1;
+    /** Read from jelly */
+    public static final int defaultPackagingThreads = 1;
+    /** Read from jelly */
+    public static final int defaultShards = 1;
+    /** Read from jelly */
+    public static final boolean defaultStoreCompressedFiles = true;
+    /** Read from jelly */
+    public static final boolean defaultDeduplicateFiles = true;
+    /** Read from jelly */
+    public static final boolean defaultReproduciblePackages = true;
+    /** Read from jelly */
+    public static final int defaultRescanAfterHours = 24;
+    /** Read from jelly */
+    public static final int defaultPollInitialDelay = 2;
+    /** Read from jelly */
+    public static final int defaultPollMaxInterval = 30;
+    private static final double MEGABYTE = 1024.0 * 1024.0;
 
     @Getter @Setter
     protected String protecodeScHost;
@@ -488,8 +1238,25 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
     @Getter @Setter
     protected boolean dontCheckCert;
 
+    /** MB/s for the uploads of all builds together, 0 for no limit */
+    @Getter @Setter
+    protected double uploadBandwidthLimit = 0;
+
+    /** MB/s for the uploads of one build, 0 for no limit */
+    @Getter @Setter
+    protected double buildUploadBandwidthLimit = 0;
+
+    /** Seconds from the upload to the first poll of a product */
+    @Getter @Setter
+    protected int pollInitialDelay = defaultPollInitialDelay;
+
+    /** The longest wait between polls of a product in seconds */
+    @Getter @Setter
+    protected int pollMaxInterval = defaultPollMaxInterval;
+
     public DescriptorImpl() {
       super.load();
+      ProtecodeScService.uploadBandwidth().setBytesPerSecond(bytesPerSecond(uploadBandwidthLimit));
     }
 
     @Override
@@ -505,6 +1272,14 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
 
       }
       this.dontCheckCert = formData.getBoolean("dontCheckCert");
+      this.uploadBandwidthLimit = Math.max(0, formData.optDouble("uploadBandwidthLimit", 0));
+      this.buildUploadBandwidthLimit =
+        Math.max(0, formData.optDouble("buildUploadBandwidthLimit", 0));
+      ProtecodeScService.uploadBandwidth().setBytesPerSecond(bytesPerSecond(uploadBandwidthLimit));
+      this.pollInitialDelay =
+        Math.max(0, formData.optInt("pollInitialDelay", defaultPollInitialDelay));
+      this.pollMaxInterval =
+        Math.max(1, formData.optInt("pollMaxInterval", defaultPollMaxInterval));
 
       save();
       return super.configure(req, formData);
@@ -568,6 +1343,145 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
       return FormValidation.ok();
     }
 
+    public FormValidation doCheckDiscoveryParallelism(@QueryParameter String discoveryParallelism) {
+      try {
+        int threads = Integer.parseInt(discoveryParallelism);
+        if (threads < 1 || threads > Configuration.MAX_DISCOVERY_PARALLELISM) {
+          throw new NumberFormatException();
+        }
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide a number between 1 and "
+          + Configuration.MAX_DISCOVERY_PARALLELISM + ".");
+      }
+    }
+
+    public FormValidation doCheckUploadBandwidthLimit(@QueryParameter String uploadBandwidthLimit) {
+      return checkBandwidthLimit(uploadBandwidthLimit);
+    }
+
+    public FormValidation doCheckBuildUploadBandwidthLimit(
+      @QueryParameter String buildUploadBandwidthLimit
+    ) {
+      return checkBandwidthLimit(buildUploadBandwidthLimit);
+    }
+
+    private static FormValidation checkBandwidthLimit(String limit) {
+      try {
+        if (!limit.trim().isEmpty() && Double.parseDouble(limit) < 0) {
+          throw new NumberFormatException();
+        }
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide megabytes per second, 0 for no limit.");
+      }
+    }
+
+    public FormValidation doCheckPollInitialDelay(@QueryParameter String pollInitialDelay) {
+      try {
+        if (Integer.parseInt(pollInitialDelay) < 0) {
+          throw new NumberFormatException();
+        }
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide the delay in seconds.");
+      }
+    }
+
+    public FormValidation doCheckPollMaxInterval(@QueryParameter String pollMaxInterval) {
+      try {
+        if (Integer.parseInt(pollMaxInterval) < 1) {
+          throw new NumberFormatException();
+        }
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide the interval in seconds, at least 1.");
+      }
+    }
+
+    /**
+     * Read from jelly
+     *
+     * @return The state of the shared upload limit right now
+     */
+    public String getUploadBandwidthState() {
+      BandwidthLimiter limiter = ProtecodeScService.uploadBandwidth();
+      String limit = limiter.isLimited()
+        ? String.format("%.1f MB/s", limiter.getBytesPerSecond() / MEGABYTE)
+        : "no limit";
+      return String.format("%s, %d uploads running, %d waiting for bandwidth, %d s waited in total",
+        limit,
+        limiter.getUploads(),
+        limiter.getThrottledUploads(),
+        TimeUnit.NANOSECONDS.toSeconds(limiter.getThrottledNanos()));
+    }
+
+    static long bytesPerSecond(double megabytesPerSecond) {
+      return (long) (megabytesPerSecond * MEGABYTE);
+    }
+
+    public FormValidation doCheckRescanAfterHours(@QueryParameter String rescanAfterHours) {
+      try {
+        Integer.parseInt(rescanAfterHours);
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide the age in hours, 0 for no limit.");
+      }
+    }
+
+    public FormValidation doCheckPackagingThreads(@QueryParameter String packagingThreads) {
+      try {
+        int threads = Integer.parseInt(packagingThreads);
+        if (threads < 1 || threads > Configuration.MAX_PACKAGING_THREADS) {
+          throw new NumberFormatException();
+        }
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide a number between 1 and "
+          + Configuration.MAX_PACKAGING_THREADS + ".");
+      }
+    }
+
+    public FormValidation doCheckUploadTimeout(@QueryParameter String uploadTimeout) {
+      try {
+        if (Integer.parseInt(uploadTimeout) < 1) {
+          throw new NumberFormatException();
+        }
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide the timeout in minutes, at least 1.");
+      }
+    }
+
+    public FormValidation doCheckShards(@QueryParameter String shards) {
+      try {
+        int count = Integer.parseInt(shards);
+        if (count < 1 || count > Configuration.MAX_REQUESTS_TO_PROTECODE) {
+          throw new NumberFormatException();
+        }
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide a number between 1 and "
+          + Configuration.MAX_REQUESTS_TO_PROTECODE + ".");
+      }
+    }
+
+    public FormValidation doCheckCompressionLevel(@QueryParameter String compressionLevel) {
+      if (compressionLevel == null || compressionLevel.trim().isEmpty()) {
+        return FormValidation.ok();
+      }
+      try {
+        int level = Integer.parseInt(compressionLevel.trim());
+        if (level < 0 || level > 9) {
+          throw new NumberFormatException();
+        }
+        return FormValidation.ok();
+      } catch (Exception e) {
+        return FormValidation.error("Please provide a level from 0 to 9, or leave empty for the "
+          + "default level.");
+      }
+    }
+
     public FormValidation doCheckTimeout(@QueryParameter String timeout) {
       try {
         Integer.parseInt(timeout);
@@ -608,11 +1522,26 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
     this.includeSubdirectories = includeSubdirectories;
   }
 
+  @DataBoundSetter
+  public void setDiscoveryParallelism(int discoveryParallelism) {
+    this.discoveryParallelism = discoveryParallelism;
+  }
+
   @DataBoundSetter
   public void setPattern(String pattern) {
     this.pattern = pattern;
   }
 
+  @DataBoundSetter
+  public void setIncludes(String includes) {
+    this.includes = includes;
+  }
+
+  @DataBoundSetter
+  public void setExcludes(String excludes) {
+    this.excludes = excludes;
+  }
+
   @DataBoundSetter
   public void setConvertToSummary(boolean convertToSummary) {
     this.convertToSummary = convertToSummary;
@@ -628,6 +1557,76 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
     this.scanTimeout = scanTimeout;
   }
 
+  @DataBoundSetter
+  public void setUploadTimeout(int uploadTimeout) {
+    this.uploadTimeout = uploadTimeout;
+  }
+
+  @DataBoundSetter
+  public void setReuseUnchangedScans(boolean reuseUnchangedScans) {
+    this.reuseUnchangedScans = reuseUnchangedScans;
+  }
+
+  @DataBoundSetter
+  public void setRescanAfterHours(int rescanAfterHours) {
+    this.rescanAfterHours = rescanAfterHours;
+  }
+
+  @DataBoundSetter
+  public void setStreamPackage(boolean streamPackage) {
+    this.streamPackage = streamPackage;
+  }
+
+  @DataBoundSetter
+  public void setStoreCompressedFiles(boolean storeCompressedFiles) {
+    this.storeCompressedFiles = storeCompressedFiles;
+  }
+
+  @DataBoundSetter
+  public void setCompressionLevel(Integer compressionLevel) {
+    this.compressionLevel = compressionLevel;
+  }
+
+  @DataBoundSetter
+  public void setPackagingThreads(int packagingThreads) {
+    this.packagingThreads = packagingThreads;
+  }
+
+  @DataBoundSetter
+  public void setDeduplicateFiles(boolean deduplicateFiles) {
+    this.deduplicateFiles = deduplicateFiles;
+  }
+
+  @DataBoundSetter
+  public void setShards(int shards) {
+    this.shards = shards;
+  }
+
+  @DataBoundSetter
+  public void setReproduciblePackages(boolean reproduciblePackages) {
+    this.reproduciblePackages = reproduciblePackages;
+  }
+
+  @DataBoundSetter
+  public void setScanFilesSeparately(boolean scanFilesSeparately) {
+    this.scanFilesSeparately = scanFilesSeparately;
+  }
+
+  @DataBoundSetter
+  public void setUploadFromAgent(boolean uploadFromAgent) {
+    this.uploadFromAgent = uploadFromAgent;
+  }
+
+  @DataBoundSetter
+  public void setResumableUploads(boolean resumableUploads) {
+    this.resumableUploads = resumableUploads;
+  }
+
+  @DataBoundSetter
+  public void setDeleteFilesOnAbort(boolean deleteFilesOnAbort) {
+    this.deleteFilesOnAbort = deleteFilesOnAbort;
+  }
+
   @CheckForNull
   public boolean getConvertToSummary() {
     return convertToSummary;
@@ -648,11 +1647,26 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
     return includeSubdirectories;
   }
 
+  @CheckForNull
+  public int getDiscoveryParallelism() {
+    return discoveryParallelism;
+  }
+
   @CheckForNull
   public String getPattern() {
     return pattern;
   }
 
+  @CheckForNull
+  public String getIncludes() {
+    return includes;
+  }
+
+  @CheckForNull
+  public String getExcludes() {
+    return excludes;
+  }
+
   @CheckForNull
   public String getProtecodeScGroup() {
     return protecodeScGroup;
@@ -667,4 +1681,74 @@ public class ProtecodeScPlugin extends Builder implements SimpleBuildStep {
   public int getScanTimeout() {
     return scanTimeout;
   }
+
+  @CheckForNull
+  public int getUploadTimeout() {
+    return uploadTimeout;
+  }
+
+  @CheckForNull
+  public boolean getReuseUnchangedScans() {
+    return reuseUnchangedScans;
+  }
+
+  @CheckForNull
+  public int getRescanAfterHours() {
+    return rescanAfterHours;
+  }
+
+  @CheckForNull
+  public boolean getStreamPackage() {
+    return streamPackage;
+  }
+
+  @CheckForNull
+  public boolean getStoreCompressedFiles() {
+    return storeCompressedFiles;
+  }
+
+  @CheckForNull
+  public Integer getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  @CheckForNull
+  public int getPackagingThreads() {
+    return packagingThreads;
+  }
+
+  @CheckForNull
+  public boolean getDeduplicateFiles() {
+    return deduplicateFiles;
+  }
+
+  @CheckForNull
+  public int getShards() {
+    return shards;
+  }
+
+  @CheckForNull
+  public boolean getReproduciblePackages() {
+    return reproduciblePackages;
+  }
+
+  @CheckForNull
+  public boolean getScanFilesSeparately() {
+    return scanFilesSeparately;
+  }
+
+  @CheckForNull
+  public boolean getUploadFromAgent() {
+    return uploadFromAgent;
+  }
+
+  @CheckForNull
+  public boolean getResumableUploads() {
+    return resumableUploads;
+  }
+
+  @CheckForNull
+  public boolean getDeleteFilesOnAbort() {
+    return deleteFilesOnAbort;
+  }
 }
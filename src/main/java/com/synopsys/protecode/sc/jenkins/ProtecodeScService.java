@@ -10,6 +10,11 @@
   *******************************************************************************/
 package com.synopsys.protecode.sc.jenkins;
 
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiAuthenticationException;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiConnectionException;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiException;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiNotFoundException;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiServerException;
 import com.synopsys.protecode.sc.jenkins.interfaces.Listeners.ErrorService;
 import com.synopsys.protecode.sc.jenkins.interfaces.Listeners.GroupService;
 import com.synopsys.protecode.sc.jenkins.interfaces.Listeners.PollService;
@@ -19,9 +24,20 @@ import com.synopsys.protecode.sc.jenkins.interfaces.ProtecodeScApi;
 import com.synopsys.protecode.sc.jenkins.interfaces.ProtecodeScServicesApi;
 import com.synopsys.protecode.sc.jenkins.types.ConnectionStatus;
 import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import com.synopsys.protecode.sc.jenkins.types.ProgressRequestBody;
+import com.synopsys.protecode.sc.jenkins.types.ThrottledRequestBody;
+import com.synopsys.protecode.sc.jenkins.utils.BandwidthLimiter;
+import com.synopsys.protecode.sc.jenkins.utils.ResumableUploader;
+import com.synopsys.protecode.sc.jenkins.utils.UploadProgress;
 import com.synopsys.protecode.sc.jenkins.utils.UtilitiesGeneral;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import lombok.Data;
 import okhttp3.RequestBody;
@@ -38,20 +54,64 @@ import retrofit2.Response;
 public @Data class ProtecodeScService {
   
   private static final Logger LOGGER = Logger.getLogger(ProtecodeScService.class.getName());
+  /** Runs the resumable uploads, which wait for each chunk unlike the other calls */
+  private static final ExecutorService RESUMABLE_UPLOADS = Executors.newFixedThreadPool(
+    Configuration.MAX_REQUESTS_TO_PROTECODE,
+    (runnable) -> {
+      Thread thread = new Thread(runnable, "protecode-resumable-upload");
+      thread.setDaemon(true);
+      return thread;
+    }
+  );
+  /** Shared by the uploads of all builds, the limit is set in the global configuration */
+  private static final BandwidthLimiter UPLOAD_BANDWIDTH = new BandwidthLimiter(0);
+  /** The server as text, URL.equals would resolve the name */
+  private String host = null;
   private ProtecodeScApi backend = null;
   private ProtecodeScServicesApi serviceBackend = null;
   
   public ProtecodeScService(String credentialsId, URL host, boolean checkCertificate){
+    this.host = host.toExternalForm();
     backend = ProtecodeScConnection.backend(credentialsId, host, checkCertificate);
     serviceBackend = ProtecodeScConnection.serviceBackend(host, checkCertificate);
   }
   
-  public void scan(String group, String fileName, RequestBody requestBody, ScanService listener) {   
+  /**
+   * @return The limiter shared by the uploads of all builds
+   */
+  public static BandwidthLimiter uploadBandwidth() {
+    return UPLOAD_BANDWIDTH;
+  }
+  
+  /**
+   * Returns at once, the listener gets the response.
+   *
+   * @param buildBandwidth Limits the uploads of the build on top of the shared limit
+   * @param progress Counts the bytes the uploads of the build have sent
+   * @return Cancelling it cancels the upload, the listener gets an error then unless the response
+   * had arrived already
+   */
+  public Future<?> scan(
+    String group,
+    String fileName,
+    RequestBody requestBody,
+    BandwidthLimiter buildBandwidth,
+    UploadProgress progress,
+    ScanService listener
+  ) {
+    expectUpload(fileName, requestBody, progress);
     Call<HttpTypes.UploadResponse> call = backend.scan(
       group,
       UtilitiesGeneral.replaceSpaceWithUnderscore(fileName),
-      requestBody
+      instrumented(requestBody, buildBandwidth, progress)
     );
+    CompletableFuture<Void> done = new CompletableFuture<Void>() {
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        call.cancel();
+        return super.cancel(mayInterruptIfRunning);
+      }
+    };
     call.enqueue(new Callback<HttpTypes.UploadResponse>() {
       @Override
       public void onResponse(
@@ -69,6 +129,7 @@ public @Data class ProtecodeScService {
               + " for file: " + fileName);
           }
         }
+        done.complete(null);
       }
       @Override
       public void onFailure(Call<HttpTypes.UploadResponse> call, Throwable t) {
@@ -76,8 +137,83 @@ public @Data class ProtecodeScService {
         String error = "Protecode SC returned error for file scan request: " + fileName +
           ": " + t.getLocalizedMessage();  
         fail(error, listener);
+        done.complete(null);
       }
     });
+    return done;
+  }
+  
+  /**
+   * Uploads in chunks, so that a network error costs only the chunk. Returns at once, the
+   * listener gets the response like with scan().
+   *
+   * @param buildBandwidth Limits the uploads of the build on top of the shared limit
+   * @param progress Counts the bytes the uploads of the build have sent
+   * @return Cancelling it stops the upload before its next chunk
+   */
+  public Future<?> scanResumable(
+    String group,
+    String fileName,
+    ResumableUploader.Source source,
+    BandwidthLimiter buildBandwidth,
+    UploadProgress progress,
+    ScanService listener
+  ) {
+    return RESUMABLE_UPLOADS.submit(() -> {
+      ResumableUploader uploader = new ResumableUploader(
+        backend,
+        group,
+        UtilitiesGeneral.replaceSpaceWithUnderscore(fileName),
+        source,
+        Configuration.UPLOAD_CHUNK_SIZE,
+        Configuration.UPLOAD_CHUNK_RETRIES,
+        Configuration.UPLOAD_RETRY_BACKOFF_MILLIS
+      );
+      uploader.wrapChunksWith((chunk) -> instrumented(chunk, buildBandwidth, progress));
+      try {
+        progress.expect(source.size());
+        HttpTypes.UploadResponse response = uploader.upload();
+        if (uploader.getRetries() > 0) {
+          LOGGER.log(Level.INFO, "Upload of {0} needed {1} retries",
+            new Object[] {fileName, uploader.getRetries()});
+        }
+        listener.processUploadResult(response);
+      } catch (IOException e) {
+        fail("Protecode SC returned error for file scan request: " + fileName + ": "
+          + e.getLocalizedMessage(), listener);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        fail("Upload of " + fileName + " was interrupted", listener);
+      }
+    });
+  }
+  
+  private static void expectUpload(
+    String fileName,
+    RequestBody requestBody,
+    UploadProgress progress
+  ) {
+    long size = -1;
+    try {
+      size = requestBody.contentLength();
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "No size for the progress of {0}", fileName);
+    }
+    progress.expect(size);
+  }
+  
+  /**
+   * @return The body throttled by the shared and the build's limits, counted in the progress
+   */
+  private static RequestBody instrumented(
+    RequestBody body,
+    BandwidthLimiter buildBandwidth,
+    UploadProgress progress
+  ) {
+    return new ProgressRequestBody(
+      new ThrottledRequestBody(body, UPLOAD_BANDWIDTH, buildBandwidth),
+      progress
+    );
   }
   
   public void poll(Integer scanId, PollService listener) {
@@ -126,6 +262,28 @@ public @Data class ProtecodeScService {
     });
   }
   
+  /**
+   * Looks up a product by the SHA-1 of its package, before the package is uploaded. Waits for the
+   * answer, unlike the other calls.
+   *
+   * @param sha1sum SHA-1 of the package
+   * @return The result of the product, empty if Protecode SC doesn't have the package or the
+   * lookup failed. A failed lookup only means that the package is uploaded.
+   */
+  public Optional<HttpTypes.ScanResultResponse> existingScanResult(String sha1sum) {
+    Call<HttpTypes.ScanResultResponse> call = backend.scanResult(sha1sum);
+    try {
+      Response<HttpTypes.ScanResultResponse> response = call.execute();
+      if (response.isSuccessful() && response.body() != null) {
+        return Optional.of(response.body());
+      }
+    } catch (IOException ex) {
+      LOGGER.log(Level.FINE, "Looking up sha1sum: {0} failed: {1}",
+        new Object[] {sha1sum, ex.getMessage()});
+    }
+    return Optional.empty();
+  }
+
   /**
    * Test the connection with a HEAD call.
    * @return ConnectionStatus object for the current connection.
@@ -165,6 +323,129 @@ public @Data class ProtecodeScService {
     });
   }
   
+  /*
+   * The same calls returning futures, which compose and run concurrently more easily than the
+   * listeners. A failed call completes its future with an ApiException: ApiAuthenticationException
+   * for 401 and 403, ApiNotFoundException for 404, ApiServerException for 5xx,
+   * ApiConnectionException when no response came and ApiException for other statuses. Cancelling
+   * the returned future cancels the http call, cancelling a future derived from it doesn't.
+   */
+  
+  /**
+   * Uploads like scan(), throttled and counted in the upload progress.
+   *
+   * @param buildBandwidth Limits the uploads of the build on top of the shared limit
+   * @param progress Counts the bytes the uploads of the build have sent
+   */
+  public CompletableFuture<HttpTypes.UploadResponse> scanAsync(
+    String group,
+    String fileName,
+    RequestBody requestBody,
+    BandwidthLimiter buildBandwidth,
+    UploadProgress progress
+  ) {
+    expectUpload(fileName, requestBody, progress);
+    return async(
+      backend.scan(group, UtilitiesGeneral.replaceSpaceWithUnderscore(fileName),
+        instrumented(requestBody, buildBandwidth, progress)),
+      "scan request for file: " + fileName
+    );
+  }
+  
+  public CompletableFuture<HttpTypes.UploadResponse> pollAsync(int scanId) {
+    return async(backend.poll(scanId), "poll request for scan id: " + scanId);
+  }
+  
+  public CompletableFuture<HttpTypes.ScanResultResponse> scanResultAsync(String sha1sum) {
+    return async(backend.scanResult(sha1sum), "scan result for sha1sum: " + sha1sum);
+  }
+  
+  public CompletableFuture<HttpTypes.InfoLeak> infoleakAsync(int scanId) {
+    return async(backend.infoleak(scanId), "infoleak for scan id: " + scanId);
+  }
+  
+  /**
+   * Deletes the product and its result.
+   */
+  public CompletableFuture<HttpTypes.Meta> deleteResultAsync(int scanId) {
+    return async(backend.deleteResult(scanId), "delete request for scan id: " + scanId);
+  }
+  
+  /**
+   * Deletes the uploaded files of the product, the result is kept.
+   */
+  public CompletableFuture<HttpTypes.Meta> deleteFilesAsync(int scanId) {
+    return async(backend.deleteFiles(scanId), "file delete request for scan id: " + scanId);
+  }
+  
+  public CompletableFuture<HttpTypes.Meta> abortScanAsync(int scanId) {
+    return async(backend.abortScan(scanId), "abort request for scan id: " + scanId);
+  }
+  
+  public CompletableFuture<HttpTypes.Meta> statusAsync() {
+    return async(backend.status(), "status request");
+  }
+  
+  public CompletableFuture<HttpTypes.Groups> groupsAsync() {
+    return async(backend.groups(), "groups request");
+  }
+  
+  /**
+   * @param call The call to make
+   * @param request What the call is, for the error messages
+   * @return Completes with the body of the response. Cancelling it cancels the call.
+   */
+  static <T> CompletableFuture<T> async(Call<T> call, String request) {
+    CompletableFuture<T> future = new CompletableFuture<T>() {
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        call.cancel();
+        return super.cancel(mayInterruptIfRunning);
+      }
+    };
+    call.enqueue(new Callback<T>() {
+      @Override
+      public void onResponse(Call<T> call, Response<T> response) {
+        if (response.isSuccessful()) {
+          future.complete(response.body());
+        } else {
+          future.completeExceptionally(apiException(request, response));
+        }
+      }
+
+      @Override
+      public void onFailure(Call<T> call, Throwable t) {
+        if (call.isCanceled()) {
+          future.cancel(false);
+        } else {
+          future.completeExceptionally(new ApiConnectionException(
+            "Protecode SC didn't respond to " + request + ": " + t.getLocalizedMessage(), t));
+        }
+      }
+    });
+    return future;
+  }
+  
+  private static ApiException apiException(String request, Response<?> response) {
+    String message = "Protecode SC returned status " + response.code() + " for " + request;
+    try {
+      if (response.errorBody() != null) {
+        message += ": " + response.errorBody().string();
+      }
+    } catch (IOException e) {
+      // The status is enough
+    }
+    int code = response.code();
+    if (code == 401 || code == 403) {
+      return new ApiAuthenticationException(message);
+    } else if (code == 404) {
+      return new ApiNotFoundException(message);
+    } else if (code >= 500) {
+      return new ApiServerException(message);
+    }
+    return new ApiException(message);
+  }
+  
   private void fail(String error, ErrorService listener) {
     listener.setError(error);
     LOGGER.warning(error);
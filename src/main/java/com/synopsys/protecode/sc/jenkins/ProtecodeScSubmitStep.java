@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+
+import com.synopsys.protecode.sc.jenkins.types.BuildUploads;
+import com.synopsys.protecode.sc.jenkins.types.ScanHandle;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import jenkins.model.Jenkins;
+import lombok.Getter;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Pipeline step which uploads the files to Protecode SC and returns without waiting for the scans.
+ * The returned ScanHandle is given to protecodescAwait, so other stages can run while Protecode SC
+ * scans the files.
+ *
+ * Returns null if nothing was uploaded.
+ */
+public class ProtecodeScSubmitStep extends Step implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Getter private final String credentialsId;
+  @Getter private final String protecodeScGroup;
+  @Getter private String directoryToScan = "";
+  @Getter private boolean includeSubdirectories = false;
+  @Getter private String pattern = "";
+  @Getter private String includes = "";
+  @Getter private String excludes = "";
+  @Getter private int uploadTimeout = ProtecodeScPlugin.DescriptorImpl.defaultUploadTimeout;
+  @Getter private boolean deleteFilesOnAbort = false;
+
+  @DataBoundConstructor
+  public ProtecodeScSubmitStep(String credentialsId, String protecodeScGroup) {
+    this.credentialsId = credentialsId;
+    this.protecodeScGroup = protecodeScGroup;
+  }
+
+  @DataBoundSetter
+  public void setDirectoryToScan(String directoryToScan) {
+    this.directoryToScan = directoryToScan;
+  }
+
+  @DataBoundSetter
+  public void setIncludeSubdirectories(boolean includeSubdirectories) {
+    this.includeSubdirectories = includeSubdirectories;
+  }
+
+  @DataBoundSetter
+  public void setPattern(String pattern) {
+    this.pattern = pattern;
+  }
+
+  @DataBoundSetter
+  public void setIncludes(String includes) {
+    this.includes = includes;
+  }
+
+  @DataBoundSetter
+  public void setExcludes(String excludes) {
+    this.excludes = excludes;
+  }
+
+  @DataBoundSetter
+  public void setUploadTimeout(int uploadTimeout) {
+    this.uploadTimeout = uploadTimeout;
+  }
+
+  @DataBoundSetter
+  public void setDeleteFilesOnAbort(boolean deleteFilesOnAbort) {
+    this.deleteFilesOnAbort = deleteFilesOnAbort;
+  }
+
+  @Override
+  public StepExecution start(StepContext context) throws Exception {
+    return new Execution(this, context);
+  }
+
+  /**
+   * @return A new scanner configured like this step, one for each execution
+   */
+  ProtecodeScPlugin scanner() {
+    ProtecodeScPlugin scanner = new ProtecodeScPlugin(credentialsId, protecodeScGroup);
+    scanner.setDirectoryToScan(directoryToScan);
+    scanner.setIncludeSubdirectories(includeSubdirectories);
+    scanner.setPattern(pattern);
+    scanner.setIncludes(includes);
+    scanner.setExcludes(excludes);
+    scanner.setUploadTimeout(uploadTimeout);
+    scanner.setDeleteFilesOnAbort(deleteFilesOnAbort);
+    return scanner;
+  }
+
+  /** Uploads on a thread of its own, the upload doesn't fit on the CPS thread */
+  private static class Execution extends SynchronousNonBlockingStepExecution<ScanHandle> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ProtecodeScSubmitStep step;
+
+    Execution(ProtecodeScSubmitStep step, StepContext context) {
+      super(context);
+      this.step = step;
+    }
+
+    @Override
+    protected ScanHandle run() throws Exception {
+      ProtecodeScPlugin scanner = step.scanner();
+      Run<?, ?> build = getContext().get(Run.class);
+      BuildUploads uploads = new BuildUploads();
+      try {
+        if (!scanner.submit(
+          build,
+          getContext().get(FilePath.class),
+          getContext().get(TaskListener.class),
+          uploads
+        )) {
+          return null;
+        }
+      } catch (InterruptedException e) {
+        // The uploads which got a response are being scanned already
+        scanner.abortScans(build, uploads);
+        throw e;
+      }
+      return scanner.handle(uploads.getResults());
+    }
+  }
+
+  @Extension
+  public static class DescriptorImpl extends StepDescriptor {
+
+    @Override
+    public Set<? extends Class<?>> getRequiredContext() {
+      return Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList(Run.class, FilePath.class, TaskListener.class))
+      );
+    }
+
+    @Override
+    public String getFunctionName() {
+      return "protecodescSubmit";
+    }
+
+    @Override
+    public String getDisplayName() {
+      return "Upload files to Protecode SC without waiting for the scan";
+    }
+
+    public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item context) {
+      return Jenkins.getInstance().getDescriptorByType(ProtecodeScPlugin.DescriptorImpl.class)
+        .doFillCredentialsIdItems(context);
+    }
+  }
+}
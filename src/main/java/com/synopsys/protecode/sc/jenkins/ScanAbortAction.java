@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+import hudson.model.InvisibleAction;
+import lombok.Getter;
+
+/**
+ * Stored with a build which aborted its scans on Protecode SC, because the build was interrupted
+ * or the scan timeout passed. Shows on the build page how much server time was given back to the
+ * other builds.
+ */
+public class ScanAbortAction extends InvisibleAction {
+
+  /** Scans which Protecode SC accepted the abort for */
+  @Getter private final int abortedScans;
+  /** How long the aborted scans had been running, together */
+  @Getter private final long scannedMillis;
+  /** How much longer the aborted scans would have run by the average scan, -1 if unknown */
+  @Getter private final long reclaimedMillis;
+
+  public ScanAbortAction(int abortedScans, long scannedMillis, long reclaimedMillis) {
+    this.abortedScans = abortedScans;
+    this.scannedMillis = scannedMillis;
+    this.reclaimedMillis = reclaimedMillis;
+  }
+
+  /**
+   * Read from jelly
+   */
+  public String getSummary() {
+    String summary = String.format("Aborted %d Protecode SC scans after %d s of scanning",
+      abortedScans, scannedMillis / 1000);
+    return reclaimedMillis < 0
+      ? summary + "."
+      : summary + String.format(", about %d s of server time reclaimed.", reclaimedMillis / 1000);
+  }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.Getter;
+
+/**
+ * Stored with a build which scanned its files successfully. A later build of the same job with an
+ * identical fingerprint can fetch the result of this scan instead of uploading the files again,
+ * if it scans to the same Protecode SC host and group.
+ */
+public class ScanFingerprintAction extends InvisibleAction {
+
+  /** Merkle fingerprint of the scanned files */
+  @Getter private final String fingerprint;
+  /** The name of the scanned file as in FileResult */
+  @Getter private final String filename;
+  /** The last status of the scan, has the product id and sha1sum */
+  @Getter private final HttpTypes.UploadResponse uploadResponse;
+  /** Files which weren't uploaded since they were identical to an uploaded file */
+  private final Map<String, List<String>> duplicates;
+  /** When the files were uploaded. A reused scan keeps the time of the original upload. */
+  @Getter private final long scanTimestamp;
+  /** The Protecode SC the product is on, null for scans stored before the host was recorded */
+  @Getter private final String host;
+  @Getter private final String protecodeScGroup;
+
+  public ScanFingerprintAction(
+    String fingerprint,
+    String filename,
+    HttpTypes.UploadResponse uploadResponse,
+    Map<String, List<String>> duplicates,
+    long scanTimestamp,
+    String host,
+    String protecodeScGroup
+  ) {
+    this.fingerprint = fingerprint;
+    this.filename = filename;
+    this.uploadResponse = uploadResponse;
+    this.duplicates = duplicates;
+    this.scanTimestamp = scanTimestamp;
+    this.host = host;
+    this.protecodeScGroup = protecodeScGroup;
+  }
+
+  /**
+   * @return true if the product is in the given group of the given Protecode SC. A product of
+   * another server or group can't be polled or reported for this job.
+   */
+  public boolean isOn(String host, String protecodeScGroup) {
+    return this.host != null && this.host.equals(host)
+      && this.protecodeScGroup != null && this.protecodeScGroup.equals(protecodeScGroup);
+  }
+
+  /**
+   * @return The duplicates of the scan, empty for scans stored before duplicates were recorded
+   */
+  public Map<String, List<String>> duplicates() {
+    return duplicates == null ? Collections.emptyMap() : duplicates;
+  }
+
+  /**
+   * @param maxAgeHours The maximum age of the scan in hours. Zero or less means no limit.
+   * @return true if the scan is recent enough to be reused
+   */
+  public boolean isFresh(int maxAgeHours) {
+    if (maxAgeHours <= 0) {
+      return true;
+    }
+    return System.currentTimeMillis() - scanTimestamp < maxAgeHours * 60L * 60L * 1000L;
+  }
+
+  /**
+   * Finds the latest successful scan from the earlier builds of the job.
+   *
+   * @param run The current build
+   * @return The action of the latest earlier build with a successful scan
+   */
+  public static Optional<ScanFingerprintAction> latest(Run<?, ?> run) {
+    int lookedAt = 0;
+    for (Run<?, ?> previous = run.getPreviousBuild();
+      previous != null && lookedAt < Configuration.FINGERPRINT_LOOKBACK_BUILDS;
+      previous = previous.getPreviousBuild()) {
+      ScanFingerprintAction action = previous.getAction(ScanFingerprintAction.class);
+      if (action != null) {
+        return Optional.of(action);
+      }
+      lookedAt++;
+    }
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+import com.synopsys.protecode.sc.jenkins.types.FileResult;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import com.synopsys.protecode.sc.jenkins.utils.Backoff;
+import com.synopsys.protecode.sc.jenkins.utils.ScanDurations;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Waits for the products of a build until their results are in. The status polls are made by the
+ * PollMultiplexer of the controller, with growing waits in between. When a product is ready its
+ * result is fetched at once.
+ */
+public class ScanPoller {
+
+  /** Durations of the scans waited for on this controller */
+  private static final ScanDurations SCAN_DURATIONS = new ScanDurations();
+
+  private final ProtecodeScService service;
+  private final Backoff backoff;
+  private final PrintStream log;
+
+  public ScanPoller(ProtecodeScService service, Backoff backoff, PrintStream log) {
+    this.service = service;
+    this.backoff = backoff;
+    this.log = log;
+  }
+
+  public static ScanDurations scanDurations() {
+    return SCAN_DURATIONS;
+  }
+
+  /**
+   * @param results The results to complete, the ones with an error or a result are left as is
+   * @return Completes when every result has a scan result or an error. Cancelling it stops the
+   * polling.
+   */
+  public CompletableFuture<Void> poll(Collection<FileResult> results) {
+    List<CompletableFuture<FileResult>> polls = results.stream()
+      .filter((result) -> !result.hasScanResponse())
+      .map(this::poll)
+      .collect(Collectors.toList());
+    CompletableFuture<Void> all = CompletableFuture.allOf(
+      polls.toArray(new CompletableFuture<?>[polls.size()])
+    );
+    all.whenComplete((nothing, error) -> {
+      if (all.isCancelled()) {
+        polls.forEach((poll) -> poll.cancel(false));
+      }
+    });
+    return all;
+  }
+
+  /**
+   * @param result The result of an uploaded file
+   * @return Completes when the result has a scan result or an error
+   */
+  public CompletableFuture<FileResult> poll(FileResult result) {
+    CompletableFuture<FileResult> done = new CompletableFuture<>();
+    if (result.uploadHTTPStatus() != 200) {
+      result.setError("Status code for file upload: '" + result.getFilename() + "' was "
+        + result.uploadHTTPStatus() + ". No results to fetch.");
+      log.println(result.getError());
+      done.complete(result);
+    } else {
+      // A product Protecode SC already had may be ready at once
+      check(result, done);
+    }
+    return done;
+  }
+
+  private void check(FileResult result, CompletableFuture<FileResult> done) {
+    String state = result.getState();
+    if ("R".equals(state)) {
+      if (result.getPolledSince() > 0) {
+        SCAN_DURATIONS.add(System.currentTimeMillis() - result.getPolledSince());
+      }
+      fetch(result, done);
+    } else if ("F".equals(state)) {
+      result.setError("Protecode SC failed to scan the file: " + result.getFilename());
+      log.println(result.getError());
+      done.complete(result);
+    } else {
+      if (result.getPolledSince() == 0) {
+        result.setPolledSince(System.currentTimeMillis());
+      }
+      CompletableFuture<HttpTypes.UploadResponse> finished = PollMultiplexer.instance().register(
+        service,
+        // TODO: Use pretty annotation in type "product_id"
+        result.getUploadResponse().getResults().getProduct_id(),
+        backoff
+      );
+      // A cancelled build stops waiting for the product
+      done.whenComplete((same, error) -> finished.cancel(false));
+      finished.whenComplete((status, error) -> {
+        if (finished.isCancelled()) {
+          return;
+        }
+        if (error != null) {
+          log.println("scan status ERROR: " + result.getFilename() + ": " + result.getState()
+            + ": " + error.getMessage());
+          result.setError(error.getMessage());
+          done.complete(result);
+        } else {
+          result.setUploadResponse(status);
+          check(result, done);
+        }
+      });
+    }
+  }
+
+  private void fetch(FileResult result, CompletableFuture<FileResult> done) {
+    result.setResultBeingFetched(true);
+    String sha1sum = result.getUploadResponse().getResults().getSha1sum();
+    // The fetches count against the same budget as the polls
+    CompletableFuture<HttpTypes.ScanResultResponse> fetched = PollMultiplexer.instance().request(
+      () -> service.scanResultAsync(sha1sum)
+    );
+    done.whenComplete((same, error) -> fetched.cancel(false));
+    fetched.whenComplete((scanResult, error) -> {
+      if (fetched.isCancelled()) {
+        return;
+      }
+      if (error != null) {
+        log.println("Received Protecode SC scan result ERROR for file: " + result.getFilename());
+        result.setError(error.getMessage());
+      } else {
+        log.println("Received a result for file: " + result.getFilename());
+        result.setResultResponse(scanResult);
+      }
+      done.complete(result);
+    });
+  }
+}
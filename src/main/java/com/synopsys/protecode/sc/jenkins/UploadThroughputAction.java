@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+import com.synopsys.protecode.sc.jenkins.utils.UploadProgress;
+import hudson.model.InvisibleAction;
+import lombok.Getter;
+
+/**
+ * Stored with a build which uploaded files to Protecode SC. Shows on the build page how fast the
+ * uploads went, so slow agents and network paths can be told apart across builds.
+ */
+public class UploadThroughputAction extends InvisibleAction {
+
+  private static final double MEGABYTE = 1024.0 * 1024.0;
+
+  /** Bytes sent by all uploads of the build */
+  @Getter private final long bytes;
+  /** Time from the first sent bytes to the last ones */
+  @Getter private final long sendingMillis;
+  @Getter private final int uploads;
+
+  public UploadThroughputAction(long bytes, long sendingMillis, int uploads) {
+    this.bytes = bytes;
+    this.sendingMillis = sendingMillis;
+    this.uploads = uploads;
+  }
+
+  public static UploadThroughputAction of(UploadProgress progress) {
+    return new UploadThroughputAction(
+      progress.getSent(),
+      progress.getSendingNanos() / 1000000,
+      progress.getUploads()
+    );
+  }
+
+  /**
+   * Read from jelly
+   *
+   * @return Megabytes per second over the whole upload
+   */
+  public double getThroughput() {
+    return sendingMillis == 0 ? 0 : bytes / MEGABYTE / (sendingMillis / 1000.0);
+  }
+
+  /**
+   * Read from jelly
+   */
+  public String getSummary() {
+    return String.format("Uploaded %.1f MB to Protecode SC in %d uploads at %.1f MB/s.",
+      bytes / MEGABYTE, uploads, getThroughput());
+  }
+}
@@ -18,4 +18,6 @@ public class ApiException extends RuntimeException {
   public ApiException(String message) { super(message); }
   
   public ApiException(Throwable t) { super(t); }
+  
+  public ApiException(String message, Throwable t) { super(message, t); }
 }
@@ -0,0 +1,19 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.exceptions;
+
+/**
+ * Protecode SC failed to handle the request, the same request may succeed later.
+ */
+public class ApiServerException extends ApiException {
+  
+  public ApiServerException(String message) { super(message); }
+}
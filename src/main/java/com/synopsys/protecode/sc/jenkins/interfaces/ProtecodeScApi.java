@@ -25,6 +25,17 @@ public interface ProtecodeScApi {
     @Body RequestBody bytes
   );
   
+  /**
+   * One chunk of a resumable upload, see ResumableUploader.
+   */
+  @PUT("/api/upload/{filename}")
+  public Call<HttpTypes.UploadResponse> scanChunk(
+    @Header("Group") String groupName,
+    @Path("filename") String filename,
+    @Header("Content-Range") String contentRange,
+    @Body RequestBody bytes
+  );
+  
   @GET("/api/product/{id}/")
   public Call<HttpTypes.UploadResponse> poll(@Path("id") int scanId);
   
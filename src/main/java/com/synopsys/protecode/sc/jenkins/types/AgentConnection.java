@@ -0,0 +1,34 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import hudson.util.Secret;
+import java.io.Serializable;
+import java.net.URL;
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * What an agent needs to talk to Protecode SC on its own. The credentials are looked up on the
+ * controller and sent with the call, since the agent can't look them up.
+ */
+@ToString(exclude = "password")
+public @Data class AgentConnection implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final URL host;
+  private final boolean checkCertificate;
+  private final String username;
+  private final Secret password;
+  private final String group;
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import java.io.Serializable;
+import lombok.Data;
+
+/**
+ * One upload made by the agent: either a package of files, zipped while it's uploaded, or a
+ * single file uploaded as is.
+ */
+public @Data class AgentUpload implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The name of the file in Protecode SC */
+  private final String uploadName;
+  /** The name of the file for the result */
+  private final String resultName;
+  /** The files of the package, or the one file to upload as is */
+  private final FileManifest files;
+  /** True to zip the files, false to upload the only file as is */
+  private final boolean packaged;
+}
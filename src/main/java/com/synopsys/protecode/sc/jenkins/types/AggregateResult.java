@@ -0,0 +1,136 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes.Component;
+import com.synopsys.protecode.sc.jenkins.types.InternalTypes.VulnStatus;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The results of all packages uploaded by one build. A build uploads one package, or one per shard
+ * when the files are split into shards. Upload responses arrive on the http client threads, so
+ * results can be added concurrently.
+ */
+public class AggregateResult {
+
+  private final List<FileResult> results = new CopyOnWriteArrayList<>();
+  /** Futures waiting for the number of results, keyed by the number */
+  private final Map<Integer, CompletableFuture<Void>> waiting = new HashMap<>();
+
+  public AggregateResult() {
+  }
+
+  public AggregateResult(FileResult result) {
+    results.add(result);
+  }
+
+  public void add(FileResult result) {
+    results.add(result);
+    synchronized (waiting) {
+      waiting.entrySet().removeIf((entry) -> {
+        if (entry.getKey() <= results.size()) {
+          entry.getValue().complete(null);
+          return true;
+        }
+        return false;
+      });
+    }
+  }
+
+  /**
+   * @param count The number of results to wait for
+   * @return Completes as soon as there are at least count results
+   */
+  public CompletableFuture<Void> sizeReached(int count) {
+    synchronized (waiting) {
+      if (results.size() >= count) {
+        return CompletableFuture.completedFuture(null);
+      }
+      return waiting.computeIfAbsent(count, (missing) -> new CompletableFuture<>());
+    }
+  }
+
+  /**
+   * @return The results of the single packages, in the order the upload responses arrived
+   */
+  public List<FileResult> getResults() {
+    return Collections.unmodifiableList(results);
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  public boolean isEmpty() {
+    return results.isEmpty();
+  }
+
+  /**
+   * @param filename The name the package was uploaded with, as in FileResult
+   * @return The result of the package
+   */
+  public Optional<FileResult> get(String filename) {
+    return results.stream().filter((result) -> filename.equals(result.getFilename())).findFirst();
+  }
+
+  /**
+   * @return True if any of the packages has an error
+   */
+  public boolean hasError() {
+    return results.stream().anyMatch(FileResult::hasError);
+  }
+
+  /**
+   * @return True if every package has a scan result or an error
+   */
+  public boolean hasScanResponses() {
+    return results.stream().allMatch(FileResult::hasScanResponse);
+  }
+
+  /**
+   * @return True if no package has an error or untriaged vulns
+   */
+  public boolean verdict() {
+    return results.stream().allMatch(FileResult::verdict);
+  }
+
+  public long untriagedVulnsCount() {
+    return results.stream().mapToLong(FileResult::untriagedVulnsCount).sum();
+  }
+
+  public long triagedVulnsCount() {
+    return results.stream().mapToLong(FileResult::triagedVulnsCount).sum();
+  }
+
+  /**
+   * @return The files of all packages with their components. The shards have separate files, so
+   * no file is in more than one package.
+   */
+  public Map<String, Map<Component, VulnStatus>> getFiles() {
+    Map<String, Map<Component, VulnStatus>> files = new HashMap<>();
+    results.forEach((result) -> files.putAll(result.getFiles()));
+    return files;
+  }
+
+  public List<FileResult.SerializableResult> getSerializableResults(int buildNumber) {
+    List<FileResult.SerializableResult> serializableResults = new ArrayList<>();
+    results.forEach((result) -> serializableResults.addAll(result.getSerializableResults(buildNumber)));
+    return serializableResults;
+  }
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import com.synopsys.protecode.sc.jenkins.utils.BandwidthLimiter;
+import com.synopsys.protecode.sc.jenkins.utils.UploadProgress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * The uploads of one build. The upload listeners keep it, so a response goes to the results of
+ * the build which made the upload even if the job has started another build meanwhile. Once the
+ * uploads are cancelled, the responses still arriving belong to no result.
+ */
+public class BuildUploads {
+
+  private final AggregateResult results;
+  private final List<Future<?>> calls = new ArrayList<>();
+  /** Limits the uploads of the build on top of the limit shared by all builds */
+  private final BandwidthLimiter bandwidth = new BandwidthLimiter(0);
+  /** Counts the bytes the uploads of the build have sent */
+  private final UploadProgress progress = new UploadProgress();
+  private boolean cancelled = false;
+
+  public BuildUploads() {
+    this(new AggregateResult());
+  }
+
+  /**
+   * @param results The scans of uploads made earlier, to poll them again
+   */
+  public BuildUploads(AggregateResult results) {
+    this.results = results;
+  }
+
+  public AggregateResult getResults() {
+    return results;
+  }
+
+  public BandwidthLimiter getBandwidth() {
+    return bandwidth;
+  }
+
+  public UploadProgress getProgress() {
+    return progress;
+  }
+
+  /**
+   * @param call An upload in flight, cancelled at once if the uploads are cancelled already
+   */
+  public synchronized void add(Future<?> call) {
+    if (cancelled) {
+      call.cancel(true);
+    } else {
+      calls.add(call);
+    }
+  }
+
+  /**
+   * Cancels the uploads which haven't finished.
+   */
+  public synchronized void cancel() {
+    cancelled = true;
+    calls.forEach((call) -> call.cancel(true));
+    calls.clear();
+  }
+
+  public synchronized boolean isCancelled() {
+    return cancelled;
+  }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * A compact listing of the files found for scanning. The manifest is built on the agent and sent
+ * to the controller in one piece, so it must stay small: only the path relative to the scanned
+ * directory, the size and the modification time are stored per file.
+ */
+public @Data class FileManifest implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<Entry> entries;
+  /** Merkle fingerprint of the file contents, null if it wasn't computed */
+  private String fingerprint = null;
+
+  public FileManifest() {
+    this.entries = new ArrayList<>();
+  }
+
+  public FileManifest(List<Entry> entries) {
+    this.entries = entries;
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return The combined size of all files in the manifest in bytes
+   */
+  public long totalSize() {
+    return entries.stream().mapToLong(Entry::getSize).sum();
+  }
+
+  public static @Data class Entry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Path relative to the scanned directory, always separated with "/" */
+    private final String relativePath;
+    private final long size;
+    private final long lastModified;
+  }
+}
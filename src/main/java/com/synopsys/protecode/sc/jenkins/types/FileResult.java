@@ -35,6 +35,15 @@ public @Data class FileResult {
   private HttpTypes.ScanResultResponse resultResponse = null;
 
   private Map<String, Map<HttpTypes.Component, InternalTypes.VulnStatus>> files = new HashMap<>();
+  /** Files left out of the package, keyed by the path of the identical file which was scanned */
+  private Map<String, List<String>> duplicates = new HashMap<>();
+  /**
+   * True if the product is the single file named by filename. All components are then reported
+   * for that file, not by the paths inside the product.
+   */
+  private boolean singleFile = false;
+  /** When the first status poll was made for the product, 0 if it hasn't been polled */
+  private long polledSince = 0;
 
   public FileResult(String filename, HttpTypes.UploadResponse uploadResponse) {
     this.filename = filename;
@@ -49,6 +58,12 @@ public @Data class FileResult {
   // TODO: This should be a model, this is a bit over the limit what it should have.
   public void setResultResponse(HttpTypes.ScanResultResponse resultResponse) {
     this.resultResponse = resultResponse;
+    if (singleFile) {
+      // A file without components is reported as well
+      for (String fileName : withDuplicates(filename)) {
+        files.putIfAbsent(fileName, new HashMap<>());
+      }
+    }
     
     for (HttpTypes.Component component : resultResponse.getResults().getComponents()) {            
       InternalTypes.VulnStatus vulnStatus = new InternalTypes.VulnStatus();
@@ -78,14 +93,38 @@ public @Data class FileResult {
         }
       }
       // Support for multifile packages
-      for(String includedFileName : component.getFileNames()) {
-        files.putIfAbsent(includedFileName, new HashMap<>());
-        files.get(includedFileName).put(component, vulnStatus);        
+      List<String> includedFileNames = singleFile
+        ? Collections.singletonList(filename)
+        : component.getFileNames();
+      for(String includedFileName : includedFileNames) {
+        for (String fileName : withDuplicates(includedFileName)) {
+          files.putIfAbsent(fileName, new HashMap<>());
+          files.get(fileName).put(component, vulnStatus);
+        }
       }
       //components.put(component, vulnStatus);
     }
   }
 
+  /**
+   * @param fileName Name of a file in the scan result
+   * @return The name and the names of the files identical to it, in the same format
+   */
+  private List<String> withDuplicates(String fileName) {
+    // The names in the result may start with a slash, the packaged paths don't
+    boolean rooted = fileName.startsWith("/");
+    List<String> copies = duplicates.get(rooted ? fileName.substring(1) : fileName);
+    if (copies == null) {
+      return Collections.singletonList(fileName);
+    }
+    List<String> names = new ArrayList<>(copies.size() + 1);
+    names.add(fileName);
+    for (String copy : copies) {
+      names.add(rooted ? "/" + copy : copy);
+    }
+    return names;
+  }
+
   private boolean hasUntriagedVulns() {
     return files.values().stream().anyMatch(
       (componentMap) -> (componentMap.values().stream().anyMatch(
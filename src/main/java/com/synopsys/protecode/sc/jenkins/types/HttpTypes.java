@@ -14,6 +14,7 @@ package com.synopsys.protecode.sc.jenkins.types;
 import com.google.gson.annotations.SerializedName;
 import com.synopsys.protecode.sc.jenkins.exceptions.ApiException;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.Serializable;
 import java.util.*;
 import lombok.Data;
 
@@ -23,12 +24,15 @@ public final class HttpTypes {
   private HttpTypes(){
   }
   
-  public static @Data class UploadResponse {
+  // Serializable since the agent returns it when it uploads
+  public static @Data class UploadResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
     private Meta meta;
     private ScanState results;
   }
   
-  public static @Data class ScanState {
+  public static @Data class ScanState implements Serializable {
+    private static final long serialVersionUID = 1L;
     private int id;
     private String sha1sum;
     /** Can be R(eady) B(usy) F(ailed) */
@@ -63,7 +67,8 @@ public final class HttpTypes {
     private final Group [] groups;
   }
   
-  public static @Data class Meta {
+  public static @Data class Meta implements Serializable {
+    private static final long serialVersionUID = 1L;
     private final int code;
   }
   
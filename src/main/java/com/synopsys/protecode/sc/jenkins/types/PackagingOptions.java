@@ -0,0 +1,38 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import java.io.Serializable;
+import java.util.zip.Deflater;
+import lombok.Data;
+
+/**
+ * How the files are packaged. Sent to the agent with the packaging call.
+ */
+public @Data class PackagingOptions implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Deflate level 0-9 for files which aren't already compressed, -1 for the default */
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  /** Store already compressed files without deflating them again */
+  private boolean storeCompressed = false;
+  /** Threads deflating the files, 1 packages in the calling thread */
+  private int threads = 1;
+  /** Package only one copy of identical files */
+  private boolean deduplicate = false;
+  /**
+   * Identical files give a byte identical zip: the entries are sorted, their timestamps are
+   * fixed and the output doesn't depend on the number of threads
+   */
+  private boolean reproducible = false;
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * Figures collected on the agent while packaging, for reporting to the build console.
+ */
+public @Data class PackagingStats implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final double MEGABYTE = 1024.0 * 1024.0;
+
+  private int files = 0;
+  /** Files which were already compressed and were stored as is */
+  private int storedFiles = 0;
+  private long storedBytes = 0;
+  /** Size of the deflated files before and after deflating */
+  private long deflatedInputBytes = 0;
+  private long deflatedOutputBytes = 0;
+  /** CPU time used by the packaging threads */
+  private long cpuNanos = 0;
+  private long wallNanos = 0;
+  /** Bytes read from the files and the time spent reading, summed over the reading threads */
+  private long readBytes = 0;
+  private long readNanos = 0;
+  /** Files left out since an identical file was packaged */
+  private int duplicateFiles = 0;
+  private long duplicateBytes = 0;
+  /** Paths of the files left out, keyed by the path of the identical file which was packaged */
+  private Map<String, List<String>> duplicates = new HashMap<>();
+  /** SHA-1 of the package as written, in hex like the sha1sum of Protecode SC */
+  private String sha1 = null;
+
+  public void addStored(long size) {
+    files++;
+    storedFiles++;
+    storedBytes += size;
+  }
+
+  public void addDeflated(long size, long compressedSize) {
+    files++;
+    deflatedInputBytes += size;
+    deflatedOutputBytes += compressedSize;
+  }
+
+  public void addRead(long bytes, long nanos) {
+    readBytes += bytes;
+    readNanos += nanos;
+  }
+
+  /**
+   * @return Packaged megabytes per second, from the start of packaging to the end
+   */
+  public double throughput() {
+    return wallNanos == 0 ? 0 : inputBytes() / MEGABYTE / (wallNanos / 1e9);
+  }
+
+  /**
+   * @return Megabytes per second per reading thread while the files were read. Compare with the
+   * bandwidth of the disk to see whether packaging waits for the disk.
+   */
+  public double readThroughput() {
+    return readNanos == 0 ? 0 : readBytes / MEGABYTE / (readNanos / 1e9);
+  }
+
+  public long inputBytes() {
+    return storedBytes + deflatedInputBytes;
+  }
+
+  /**
+   * @return How many bytes deflating removed from the package
+   */
+  public long bytesSaved() {
+    return deflatedInputBytes - deflatedOutputBytes;
+  }
+
+  /**
+   * @return A one line summary for the build console
+   */
+  public String summary() {
+    return String.format(
+      "Packaged %d files (%.1f MB) in %.1f s using %.1f s of CPU. %d already compressed files "
+        + "(%.1f MB) were stored as is, deflating the rest saved %.1f MB.",
+      files,
+      inputBytes() / MEGABYTE,
+      wallNanos / 1e9,
+      cpuNanos / 1e9,
+      storedFiles,
+      storedBytes / MEGABYTE,
+      bytesSaved() / MEGABYTE
+    ) + String.format(
+      " Packaging ran at %.1f MB/s, the files were read at %.1f MB/s.",
+      throughput(),
+      readThroughput()
+    ) + (duplicateFiles == 0 ? "" : String.format(
+      " %d duplicate files (%.1f MB) were left out.",
+      duplicateFiles,
+      duplicateBytes / MEGABYTE
+    ));
+  }
+}
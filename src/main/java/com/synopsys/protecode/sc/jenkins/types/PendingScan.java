@@ -0,0 +1,66 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * A scan uploaded by a build whose result hasn't been reported yet. Kept with the pipeline, so
+ * that the build can go on polling the product after the controller restarts.
+ */
+public @Data class PendingScan implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The name of the file for the result */
+  private final String filename;
+  /** The latest status of the product, null if the upload failed */
+  private final HttpTypes.UploadResponse uploadResponse;
+  /** The error of the upload, null if there was none */
+  private final String error;
+  /** Files left out of the package, keyed by the path of the identical file which was scanned */
+  private final HashMap<String, List<String>> duplicates;
+  private final boolean singleFile;
+  /** When the product was first polled, to tell how long it has been scanned */
+  private final long polledSince;
+
+  public static PendingScan of(FileResult result) {
+    HashMap<String, List<String>> duplicates = new HashMap<>();
+    if (result.getDuplicates() != null) {
+      result.getDuplicates().forEach(
+        (path, copies) -> duplicates.put(path, new ArrayList<>(copies))
+      );
+    }
+    return new PendingScan(
+      result.getFilename(),
+      result.getUploadResponse(),
+      result.getError(),
+      duplicates,
+      result.isSingleFile(),
+      result.getPolledSince()
+    );
+  }
+
+  public FileResult toResult() {
+    FileResult result = error == null
+      ? new FileResult(filename, uploadResponse)
+      : new FileResult(filename, error);
+    result.setSingleFile(singleFile);
+    result.setPolledSince(polledSince);
+    result.setDuplicates(new HashMap<>(duplicates));
+    return result;
+  }
+}
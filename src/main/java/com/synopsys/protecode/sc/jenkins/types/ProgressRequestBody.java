@@ -0,0 +1,75 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import com.synopsys.protecode.sc.jenkins.utils.UploadProgress;
+import java.io.IOException;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Request body which counts the bytes of the body it wraps as they are handed to the connection.
+ * The bytes of a failed or repeated attempt are taken back, so the progress never counts a byte
+ * twice.
+ */
+public class ProgressRequestBody extends RequestBody {
+  private final RequestBody body;
+  private final UploadProgress progress;
+  /** Bytes counted by the latest attempt */
+  private long attempt = 0;
+
+  public ProgressRequestBody(RequestBody body, UploadProgress progress) {
+    this.body = body;
+    this.progress = progress;
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return body.contentType();
+  }
+
+  @Override
+  public long contentLength() throws IOException {
+    return body.contentLength();
+  }
+
+  @Override
+  public void writeTo(@NonNull BufferedSink sink) throws IOException {
+    // okhttp writes the body again if it retries the request
+    progress.sent(-attempt);
+    attempt = 0;
+    BufferedSink counted = Okio.buffer(new ForwardingSink(sink) {
+      @Override
+      public void write(Buffer source, long byteCount) throws IOException {
+        super.write(source, byteCount);
+        attempt += byteCount;
+        progress.sent(byteCount);
+      }
+    });
+    try {
+      body.writeTo(counted);
+      // As in ThrottledRequestBody
+      counted.emit();
+    } catch (IOException e) {
+      progress.sent(-attempt);
+      attempt = 0;
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import lombok.Data;
+
+/**
+ * The scans uploaded by protecodescSubmit. Returned to the pipeline, which passes it to
+ * protecodescAwait to poll the scans and report them.
+ */
+public @Data class ScanHandle implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The credentials the files were uploaded with, the scans are polled with the same */
+  private final String credentialsId;
+  private final String protecodeScGroup;
+  private final ArrayList<PendingScan> scans;
+  /** Merkle fingerprint of the files, null if the files weren't fingerprinted */
+  private final String fingerprint;
+  private final long scanTimestamp;
+
+  /**
+   * @return The Protecode SC product ids of the uploads which succeeded
+   */
+  public List<Integer> getProductIds() {
+    return states().stream().map(HttpTypes.ScanState::getProduct_id).collect(Collectors.toList());
+  }
+
+  /**
+   * @return The sha1sums of the uploaded packages, in the order of getProductIds
+   */
+  public List<String> getSha1sums() {
+    return states().stream().map(HttpTypes.ScanState::getSha1sum).collect(Collectors.toList());
+  }
+
+  private List<HttpTypes.ScanState> states() {
+    return scans.stream()
+      .map(PendingScan::getUploadResponse)
+      .filter(Objects::nonNull)
+      .map(HttpTypes.UploadResponse::getResults)
+      .filter(Objects::nonNull)
+      .collect(Collectors.toList());
+  }
+}
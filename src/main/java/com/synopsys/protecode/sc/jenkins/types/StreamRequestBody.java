@@ -12,29 +12,47 @@ package com.synopsys.protecode.sc.jenkins.types;
 
 import hudson.FilePath;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
+import lombok.Getter;
 import lombok.NonNull;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
-import okhttp3.internal.Util;
 import okio.BufferedSink;
-import okio.Okio;
-import okio.Source;
 
+/**
+ * Request body which uploads a file of the agent. The file is read over remoting and written to
+ * the request in blocks of 1 MB without flushing in between, so the socket and TLS get large
+ * writes.
+ *
+ * The size is read once when the body is made. A file whose size changes before it's sent fails
+ * the upload, since the server would get a different number of bytes than announced.
+ */
 public class StreamRequestBody extends RequestBody {
+  static final int BLOCK_SIZE = 1024 * 1024;
+
+  private static final double MEGABYTE = 1024.0 * 1024.0;
+
   private final FilePath file;
   private final MediaType contentType;
+  private final long contentLength;
+  /** Bytes written to the request by the latest writeTo */
+  @Getter private volatile long bytesWritten = 0;
+  /** Time the latest writeTo took */
+  @Getter private volatile long writeNanos = 0;
 
   private static final Logger LOGGER = Logger.getLogger(StreamRequestBody.class.getName());
 
   public StreamRequestBody(MediaType contentType, FilePath file) throws IOException, InterruptedException {
-    if (file.read() == null) {
-      throw new NullPointerException("File inputStream == null");
+    // Only check the file, a stream opened here would never be closed
+    if (!file.exists()) {
+      throw new IOException("File to upload doesn't exist: " + file.getRemote());
     }
     this.file = file;
     this.contentType = contentType;
+    this.contentLength = file.length();
   }
 
   @Nullable
@@ -44,65 +62,60 @@ public class StreamRequestBody extends RequestBody {
   }
 
   @Override
-  public long contentLength() throws IOException {
-    long size = 0;
-    try {
-      size = file.length();
-    } catch (IOException | InterruptedException e) {
-      // IOE = larger scane failure, IE = Interrupted build?
-      LOGGER.log(
-        Level.WARNING,
-        "Could not read file size for FilePath object: {0}",
-        file.getRemote()
-      );
-    }
-    return size;
+  public long contentLength() {
+    return contentLength;
   }
 
-  @Override
-  public void writeTo(@NonNull BufferedSink sink) {
-    /*
-    * TODO!
-    * If the "unexpected end of stream" problem persists, try:    
-    *    
-      OutputStream output = sink.outputStream();      
-      InputStream input = file.read();
+  /**
+   * @return Megabytes per second written by the latest writeTo
+   */
+  public double throughput() {
+    return writeNanos == 0 ? 0 : bytesWritten / MEGABYTE / (writeNanos / 1e9);
+  }
 
-      byte[] bytes = new byte[1024]; // Again an arbitrary number
+  @Override
+  public void writeTo(@NonNull BufferedSink sink) throws IOException {
+    long start = System.nanoTime();
+    long written = 0;
+    // A small file doesn't need the whole block
+    byte[] block = new byte[(int) Math.max(1, Math.min(BLOCK_SIZE, contentLength))];
+    try (InputStream input = file.read()) {
       int length;
-      while ((length = input.read(bytes)) >= 0) {
-        output.write(bytes, 0, length);
+      while ((length = fill(input, block)) > 0) {
+        sink.write(block, 0, length);
+        written += length;
+        bytesWritten = written;
       }
-    * 
-    * This is the "dummy" way of doing this, but might help in figuring what happens with really
-    * heavy loads
-    */
-    
-    Source source = null;
-    // TODO: Study if other amount would be better... This is just a number-out-of-a-hat.
-    long writeAmount = 8192L;  // arbitratry nice number.    
-    try {      
-      source = Okio.source(file.read());
-      while (true) {
-        try {
-          // Do not use writeAll, since it depends on the source(inputstream) knowing how much it
-          // still has. In this case it seems the stream doesnt know how much it has and returns 
-          // zero.
-          sink.write(source, writeAmount);
-          sink.flush();
-        } catch (IOException e) {
-          // Okio throws exception when attempting to read more than there is in a stream. Why we do 
-          // not use sink.writeAll() is because it relies on source.available which returns zero due 
-          // to lack of implementation or okio/jenkins compatibility
-          break;
-        }
-      }      
-    } catch (Exception e) {
+    } catch (IOException e) {
       LOGGER.log(Level.WARNING, "Error while sending file. Error message: {0}", e.getMessage());
+      throw e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while sending file", e);
     } finally {
-      // TODO: Figure out that does this also close the file for real. According to the "ownership"
-      // of the handle it shouldn't necessarily close it.
-      Util.closeQuietly(source);
+      writeNanos = System.nanoTime() - start;
+    }
+    if (written != contentLength) {
+      throw new IOException("File " + file.getRemote() + " changed while uploading, sent "
+        + written + " bytes instead of " + contentLength);
+    }
+    LOGGER.log(Level.FINE, "Sent {0} at {1} MB/s", new Object[] {file.getRemote(), throughput()});
+  }
+
+  /**
+   * Reads until the block is full or the file ends.
+   *
+   * @return The number of bytes read, 0 only at the end of the file
+   */
+  private static int fill(InputStream input, byte[] block) throws IOException {
+    int filled = 0;
+    while (filled < block.length) {
+      int length = input.read(block, filled, block.length - filled);
+      if (length < 0) {
+        break;
+      }
+      filled += length;
     }
+    return filled;
   }
 }
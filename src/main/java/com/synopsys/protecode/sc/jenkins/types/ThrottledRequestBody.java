@@ -0,0 +1,88 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import com.synopsys.protecode.sc.jenkins.utils.BandwidthLimiter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Request body which sends the body it wraps no faster than its limiters allow. Every slice of
+ * bytes is taken from each limiter in turn, so the slowest of them sets the pace.
+ */
+public class ThrottledRequestBody extends RequestBody {
+  private final RequestBody body;
+  private final BandwidthLimiter[] limiters;
+
+  public ThrottledRequestBody(RequestBody body, BandwidthLimiter... limiters) {
+    this.body = body;
+    this.limiters = limiters;
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return body.contentType();
+  }
+
+  @Override
+  public long contentLength() throws IOException {
+    return body.contentLength();
+  }
+
+  @Override
+  public void writeTo(@NonNull BufferedSink sink) throws IOException {
+    for (BandwidthLimiter limiter : limiters) {
+      limiter.uploadStarted();
+    }
+    try {
+      BufferedSink throttled = Okio.buffer(new ForwardingSink(sink) {
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+          long left = byteCount;
+          while (left > 0) {
+            int slice = (int) Math.min(left, BandwidthLimiter.SLICE);
+            acquire(slice);
+            super.write(source, slice);
+            left -= slice;
+          }
+        }
+      });
+      body.writeTo(throttled);
+      // Not closed, okhttp owns the sink
+      throttled.emit();
+    } finally {
+      for (BandwidthLimiter limiter : limiters) {
+        limiter.uploadFinished();
+      }
+    }
+  }
+
+  private void acquire(int slice) throws InterruptedIOException {
+    try {
+      for (BandwidthLimiter limiter : limiters) {
+        limiter.acquire(slice);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for upload bandwidth");
+    }
+  }
+}
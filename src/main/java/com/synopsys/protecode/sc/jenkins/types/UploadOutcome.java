@@ -0,0 +1,31 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import java.io.Serializable;
+import lombok.Data;
+
+/**
+ * What an upload made by the agent returns to the controller.
+ */
+public @Data class UploadOutcome implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String resultName;
+  /** The response of Protecode SC, null if the upload failed */
+  private HttpTypes.UploadResponse response = null;
+  /** Why the upload failed, null if it succeeded */
+  private String error = null;
+  /** Figures of the packaging, null for a file uploaded as is */
+  private PackagingStats stats = null;
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.types;
+
+import com.synopsys.protecode.sc.jenkins.utils.ZipPackager;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.NonNull;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Request body which zips local files while they are uploaded. Used on the agent, where the files
+ * can be read directly, so the zip is never written to disk and never crosses remoting.
+ *
+ * The zip is sent like ZipStreamRequestBody sends it, see there for its transfer encoding.
+ */
+public class ZipRequestBody extends RequestBody {
+  private final Path root;
+  private final FileManifest manifest;
+  private final PackagingOptions options;
+  private final MediaType contentType;
+  /** Figures of the latest complete packaging, null until the zip has been sent */
+  @Getter private volatile PackagingStats stats = null;
+
+  public ZipRequestBody(
+    MediaType contentType,
+    Path root,
+    FileManifest manifest,
+    PackagingOptions options
+  ) {
+    this.root = root;
+    this.manifest = manifest;
+    this.options = options;
+    this.contentType = contentType;
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  /**
+   * @return -1 since the size of the zip is known only after it has been sent.
+   */
+  @Override
+  public long contentLength() {
+    return -1L;
+  }
+
+  @Override
+  public void writeTo(@NonNull BufferedSink sink) throws IOException {
+    PackagingStats written = ZipPackager.write(root, manifest, options, sink.outputStream());
+    sink.flush();
+    stats = written;
+  }
+}
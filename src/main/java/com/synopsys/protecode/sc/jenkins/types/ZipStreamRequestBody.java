@@ -0,0 +1,116 @@
+/** *****************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ ****************************************************************************** */
+package com.synopsys.protecode.sc.jenkins.types;
+
+import com.synopsys.protecode.sc.jenkins.utils.UtilitiesFile;
+import hudson.FilePath;
+import hudson.remoting.Pipe;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.NonNull;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Request body which zips the files on the agent while they are uploaded. The zip flows from the
+ * agent through a remoting pipe straight into the request, so it's never written to disk. The
+ * pipe has flow control, so the agent can't get further ahead of the upload than the pipe window.
+ * A directory on the controller is zipped into a bounded in-memory pipe instead.
+ *
+ * The size of the zip isn't known beforehand, so the upload uses chunked transfer encoding. If
+ * the request is retried, the files are zipped again.
+ */
+public class ZipStreamRequestBody extends RequestBody {
+  /** How far the packaging of a directory on the controller can get ahead of the upload */
+  static final int LOCAL_PIPE_SIZE = 1024 * 1024;
+
+  private final FilePath directory;
+  private final FileManifest manifest;
+  private final PackagingOptions options;
+  private final MediaType contentType;
+  /** Figures of the latest complete packaging, null until the zip has been sent */
+  @Getter private volatile PackagingStats stats = null;
+
+  private static final Logger LOGGER = Logger.getLogger(ZipStreamRequestBody.class.getName());
+
+  public ZipStreamRequestBody(
+    MediaType contentType,
+    FilePath directory,
+    FileManifest manifest,
+    PackagingOptions options
+  ) {
+    this.directory = directory;
+    this.manifest = manifest;
+    this.options = options;
+    this.contentType = contentType;
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  /**
+   * @return -1 since the size of the zip is known only after it has been sent.
+   */
+  @Override
+  public long contentLength() {
+    return -1L;
+  }
+
+  @Override
+  public void writeTo(@NonNull BufferedSink sink) throws IOException {
+    InputStream zip;
+    Future<PackagingStats> packaging;
+    try {
+      if (directory.isRemote()) {
+        Pipe pipe = Pipe.createRemoteToLocal();
+        zip = pipe.getIn();
+        packaging = UtilitiesFile.streamFiles(directory, manifest, options, pipe);
+      } else {
+        PipedInputStream in = new PipedInputStream(LOCAL_PIPE_SIZE);
+        zip = in;
+        packaging = UtilitiesFile.streamLocalFiles(
+          directory, manifest, options, new PipedOutputStream(in)
+        );
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while starting to package files", e);
+    }
+
+    try (InputStream input = zip) {
+      sink.writeAll(Okio.source(input));
+      // Fails the request if the zip wasn't completely written
+      stats = packaging.get();
+    } catch (ExecutionException e) {
+      LOGGER.log(Level.WARNING, "Error while packaging files: {0}", e.getCause().getMessage());
+      throw new IOException("Packaging files failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while packaging files", e);
+    } finally {
+      // In case the upload failed, the packaging mustn't be left waiting on a full pipe.
+      packaging.cancel(true);
+    }
+  }
+}
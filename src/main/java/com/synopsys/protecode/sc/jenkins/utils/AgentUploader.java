@@ -0,0 +1,151 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.Configuration;
+import com.synopsys.protecode.sc.jenkins.ProtecodeScConnection;
+import com.synopsys.protecode.sc.jenkins.interfaces.ProtecodeScApi;
+import com.synopsys.protecode.sc.jenkins.types.AgentConnection;
+import com.synopsys.protecode.sc.jenkins.types.AgentUpload;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.UploadOutcome;
+import com.synopsys.protecode.sc.jenkins.types.ZipRequestBody;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import retrofit2.Response;
+
+/**
+ * Uploads files to Protecode SC from the agent, with an http client of the agent. The files are
+ * read where they are, only the upload responses go back to the controller.
+ *
+ * At most MAX_REQUESTS_TO_PROTECODE uploads run at a time, like on the controller.
+ */
+public final class AgentUploader {
+
+  private static final Logger LOGGER = Logger.getLogger(AgentUploader.class.getName());
+
+  private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+  private AgentUploader() {
+    // don't instantiate me...
+  }
+
+  /**
+   * Makes the uploads and waits for their responses. A failed upload doesn't stop the others, its
+   * outcome has the error.
+   *
+   * @param root The directory the paths of the uploads are relative to
+   * @param uploads What to upload
+   * @param options How to package the files of packaged uploads
+   * @param connection Where and as whom to upload
+   * @return The outcomes of the uploads, in the order of the uploads
+   * @throws InterruptedException if the build is interrupted
+   */
+  public static List<UploadOutcome> upload(
+    Path root,
+    List<AgentUpload> uploads,
+    PackagingOptions options,
+    AgentConnection connection
+  ) throws InterruptedException {
+    ProtecodeScApi backend = ProtecodeScConnection.backend(
+      connection.getUsername(),
+      connection.getPassword(),
+      connection.getHost(),
+      connection.isCheckCertificate()
+    );
+    int threads = Math.max(1, Math.min(uploads.size(), Configuration.MAX_REQUESTS_TO_PROTECODE));
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<UploadOutcome>> futures = new ArrayList<>();
+      String group = connection.getGroup();
+      for (AgentUpload upload : uploads) {
+        futures.add(pool.submit(() -> upload(backend, group, root, upload, options)));
+      }
+      List<UploadOutcome> outcomes = new ArrayList<>();
+      for (Future<UploadOutcome> future : futures) {
+        try {
+          outcomes.add(future.get());
+        } catch (ExecutionException e) {
+          // upload() catches what it expects, this is a bug
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+      return outcomes;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static UploadOutcome upload(
+    ProtecodeScApi backend,
+    String group,
+    Path root,
+    AgentUpload upload,
+    PackagingOptions options
+  ) {
+    UploadOutcome outcome = new UploadOutcome(upload.getResultName());
+    ZipRequestBody zip = null;
+    RequestBody body;
+    if (upload.isPackaged()) {
+      zip = new ZipRequestBody(OCTET_STREAM, root, upload.getFiles(), options);
+      body = zip;
+    } else {
+      Path file = root.resolve(upload.getFiles().getEntries().get(0).getRelativePath());
+      body = RequestBody.create(OCTET_STREAM, file.toFile());
+    }
+
+    String fileName = upload.getUploadName();
+    try {
+      Response<HttpTypes.UploadResponse> response = backend.scan(
+        group,
+        UtilitiesGeneral.replaceSpaceWithUnderscore(fileName),
+        body
+      ).execute();
+      if (response.isSuccessful()) {
+        outcome.setResponse(response.body());
+      } else {
+        outcome.setError("Protecode SC returned error for " + errorMessage(response)
+          + " for file: " + fileName);
+      }
+    } catch (IOException e) {
+      outcome.setError("Protecode SC returned error for file scan request: " + fileName + ": "
+        + e.getLocalizedMessage());
+      LOGGER.log(Level.WARNING, outcome.getError());
+    }
+    if (zip != null) {
+      outcome.setStats(zip.getStats());
+    }
+    return outcome;
+  }
+
+  private static String errorMessage(Response<?> response) {
+    if (response.errorBody() != null) {
+      try {
+        return response.errorBody().string();
+      } catch (IOException e) {
+        // the code is all there is then
+      }
+    }
+    return "code " + response.code();
+  }
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter. The wait grows by the factor after every attempt up to the
+ * maximum, and is moved randomly by up to the jitter fraction either way, so that builds which
+ * started together don't keep asking at the same moments.
+ */
+public final class Backoff {
+
+  private final long initialMillis;
+  private final long maxMillis;
+  private final double factor;
+  private final double jitter;
+
+  /**
+   * @param initialMillis The wait before the first attempt
+   * @param maxMillis The longest wait, also with the jitter
+   * @param factor How much the wait grows after every attempt
+   * @param jitter Fraction of the wait it's moved by at most, 0 for none
+   */
+  public Backoff(long initialMillis, long maxMillis, double factor, double jitter) {
+    this.initialMillis = Math.max(0, initialMillis);
+    this.maxMillis = Math.max(this.initialMillis, maxMillis);
+    this.factor = Math.max(1, factor);
+    this.jitter = Math.min(1, Math.max(0, jitter));
+  }
+
+  /**
+   * @param attempt How many attempts have been made, 0 for the first
+   * @return The wait before the attempt
+   */
+  public long delay(int attempt) {
+    return delay(attempt, ThreadLocalRandom.current().nextDouble());
+  }
+
+  /**
+   * @param attempt How many attempts have been made, 0 for the first
+   * @param random Uniformly random between 0 and 1
+   * @return The wait before the attempt
+   */
+  long delay(int attempt, double random) {
+    double wait = Math.min(maxMillis, initialMillis * Math.pow(factor, attempt));
+    double jittered = wait * (1 - jitter + 2 * jitter * random);
+    return Math.min(maxMillis, Math.round(jittered));
+  }
+}
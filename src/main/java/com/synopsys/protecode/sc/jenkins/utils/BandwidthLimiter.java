@@ -0,0 +1,170 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket which limits the bytes per second of the uploads sharing it.
+ *
+ * An upload takes at most a slice at a time. A slice which the bucket can't cover is reserved
+ * anyway and the upload sleeps until the bucket has refilled the debt, so the next upload in line
+ * waits also for the slices reserved before it. With the fair lock the uploads reserve in the order
+ * they ask, which splits the bandwidth evenly between the uploads which are waiting.
+ *
+ * The bucket holds at most a quarter of a second of bytes, so an idle link allows only a short
+ * burst.
+ */
+public final class BandwidthLimiter {
+
+  /** Most bytes taken from the bucket at once, smaller slices interleave the uploads finer */
+  public static final int SLICE = 64 * 1024;
+
+  private final ReentrantLock lock = new ReentrantLock(true);
+  private final AtomicInteger uploads = new AtomicInteger();
+  private final AtomicInteger throttled = new AtomicInteger();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder throttledNanos = new LongAdder();
+  private volatile long bytesPerSecond;
+  /** Negative when uploads have reserved more than the bucket had */
+  private double tokens;
+  private long refilled = System.nanoTime();
+
+  /**
+   * @param bytesPerSecond The limit, 0 or less for no limit
+   */
+  public BandwidthLimiter(long bytesPerSecond) {
+    this.bytesPerSecond = Math.max(0, bytesPerSecond);
+    this.tokens = capacity();
+  }
+
+  /**
+   * Changes the limit, also for the uploads already running.
+   *
+   * @param bytesPerSecond The limit, 0 or less for no limit
+   */
+  public void setBytesPerSecond(long bytesPerSecond) {
+    lock.lock();
+    try {
+      refill(System.nanoTime());
+      this.bytesPerSecond = Math.max(0, bytesPerSecond);
+      tokens = Math.max(0, Math.min(tokens, capacity()));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  public boolean isLimited() {
+    return bytesPerSecond > 0;
+  }
+
+  /**
+   * Waits until the bytes may be sent.
+   *
+   * @param count Bytes about to be sent, at most a slice for the sharing to stay fair
+   * @throws InterruptedException if the upload is interrupted while waiting, the bytes are given
+   * back then
+   */
+  public void acquire(int count) throws InterruptedException {
+    bytes.add(count);
+    long rate = bytesPerSecond;
+    if (rate <= 0) {
+      return;
+    }
+    long waitNanos;
+    lock.lock();
+    try {
+      refill(System.nanoTime());
+      tokens -= count;
+      waitNanos = tokens < 0 ? (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+    } finally {
+      lock.unlock();
+    }
+    if (waitNanos == 0) {
+      return;
+    }
+    throttled.incrementAndGet();
+    long start = System.nanoTime();
+    try {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    } catch (InterruptedException e) {
+      giveBack(count);
+      throw e;
+    } finally {
+      throttledNanos.add(System.nanoTime() - start);
+      throttled.decrementAndGet();
+    }
+  }
+
+  /** Marks an upload running, for the state shown to the user */
+  public void uploadStarted() {
+    uploads.incrementAndGet();
+  }
+
+  public void uploadFinished() {
+    uploads.decrementAndGet();
+  }
+
+  /**
+   * @return The uploads running through this limiter
+   */
+  public int getUploads() {
+    return uploads.get();
+  }
+
+  /**
+   * @return The uploads waiting for the bucket right now
+   */
+  public int getThrottledUploads() {
+    return throttled.get();
+  }
+
+  /**
+   * @return All bytes sent through this limiter
+   */
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  /**
+   * @return The time all uploads together have waited for the bucket
+   */
+  public long getThrottledNanos() {
+    return throttledNanos.sum();
+  }
+
+  private void giveBack(int count) {
+    lock.lock();
+    try {
+      tokens = Math.min(capacity(), tokens + count);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void refill(long now) {
+    tokens = Math.min(capacity(), tokens + (now - refilled) * (double) bytesPerSecond
+      / TimeUnit.SECONDS.toNanos(1));
+    refilled = now;
+  }
+
+  private long capacity() {
+    return Math.max(SLICE, bytesPerSecond / 4);
+  }
+}
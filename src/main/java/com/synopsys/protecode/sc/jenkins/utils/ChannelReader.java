@@ -0,0 +1,141 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads files on the agent through a FileChannel into one reused buffer, and keeps count of the
+ * bytes read and the time spent reading. One reader is used by one thread. For reads of parts the
+ * channel is kept open while the parts come from the same file, close the reader when done.
+ *
+ * The buffer is on the heap: on Java 8 Deflater, CRC32 and ZipOutputStream take byte arrays, so
+ * a direct buffer would only add a copy.
+ */
+final class ChannelReader implements Closeable {
+
+  static final int BUFFER_SIZE = 1024 * 1024;
+
+  /** Receives the content of a file one buffer at a time */
+  interface Sink {
+    void accept(byte[] data, int length) throws IOException;
+  }
+
+  private final int bufferSize;
+  /** Allocated on the first whole file read, reads of parts go straight to the caller's array */
+  private ByteBuffer buffer = null;
+  /** Counted by the reading thread, read by the packager thread */
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong readNanos = new AtomicLong();
+  /** The file the parts were last read from and its channel, null if none is open */
+  private Path openFile = null;
+  private FileChannel openChannel = null;
+
+  ChannelReader() {
+    this(BUFFER_SIZE);
+  }
+
+  ChannelReader(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Reads the whole file. The channel is closed also when the sink fails.
+   *
+   * @param file The file to read
+   * @param sink Gets the content, the array is reused for the next call
+   * @return The number of bytes read
+   * @throws IOException if reading fails
+   */
+  long read(Path file, Sink sink) throws IOException {
+    if (buffer == null) {
+      buffer = ByteBuffer.allocate(bufferSize);
+    }
+    long total = 0;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (true) {
+        buffer.clear();
+        long start = System.nanoTime();
+        int length = channel.read(buffer);
+        readNanos.addAndGet(System.nanoTime() - start);
+        if (length < 0) {
+          break;
+        }
+        sink.accept(buffer.array(), length);
+        total += length;
+      }
+    }
+    bytesRead.addAndGet(total);
+    return total;
+  }
+
+  /**
+   * Reads a part of the file into the given array.
+   *
+   * @return The number of bytes read, less than asked if the file ended
+   * @throws IOException if reading fails
+   */
+  synchronized int read(Path file, long position, byte[] target, int length)
+    throws IOException {
+    ByteBuffer into = ByteBuffer.wrap(target, 0, length);
+    long start = System.nanoTime();
+    try {
+      FileChannel channel = channel(file);
+      while (into.hasRemaining()) {
+        if (channel.read(into, position + into.position()) < 0) {
+          break;
+        }
+      }
+    } finally {
+      readNanos.addAndGet(System.nanoTime() - start);
+    }
+    bytesRead.addAndGet(into.position());
+    return into.position();
+  }
+
+  /**
+   * Closes the channel kept open for reading parts. The reader can still be used after this.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    FileChannel channel = openChannel;
+    openChannel = null;
+    openFile = null;
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  private FileChannel channel(Path file) throws IOException {
+    // An interrupt during a read closes the channel
+    if (openChannel == null || !openChannel.isOpen() || !file.equals(openFile)) {
+      close();
+      openChannel = FileChannel.open(file, StandardOpenOption.READ);
+      openFile = file;
+    }
+    return openChannel;
+  }
+
+  long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  long getReadNanos() {
+    return readNanos.get();
+  }
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides whether a file is already compressed, in which case deflating it again would only cost
+ * CPU. Most scanned files are packages (jars, rpms, apks, tarballs), which are.
+ *
+ * The decision is made in three steps, from cheapest to most expensive: the file extension, the
+ * magic bytes at the start of the file and the entropy of a sample from the start of the file.
+ */
+public final class CompressionPolicy {
+
+  /** Bytes read from the start of the file for the magic and entropy checks */
+  static final int SAMPLE_SIZE = 16 * 1024;
+
+  /** Smaller files are always deflated, the checks would cost more than they save */
+  static final long MIN_SIZE_TO_CHECK = 4 * 1024;
+
+  /**
+   * Bits per byte above which the sample is considered compressed or encrypted. Random data is
+   * very close to 8, text and binaries are well below 7.
+   */
+  static final double ENTROPY_THRESHOLD = 7.5;
+
+  private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+    // archives
+    "zip", "jar", "war", "ear", "aar", "apk", "ipa", "jmod", "whl", "egg", "nupkg", "crx", "xpi",
+    "rpm", "deb", "gz", "tgz", "bz2", "tbz2", "xz", "txz", "lz", "lzma", "zst", "7z", "rar", "cab",
+    // media and documents, which are zip containers
+    "jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "mkv", "avi", "mov", "ogg", "flac",
+    "woff", "woff2", "docx", "xlsx", "pptx", "odt", "ods"
+  ));
+
+  private static final byte[][] COMPRESSED_MAGICS = {
+    {'P', 'K', 3, 4},                                         // zip, jar, apk, ...
+    {(byte) 0x1f, (byte) 0x8b},                               // gzip
+    {'B', 'Z', 'h'},                                          // bzip2
+    {(byte) 0xfd, '7', 'z', 'X', 'Z', 0},                     // xz
+    {'7', 'z', (byte) 0xbc, (byte) 0xaf, (byte) 0x27, (byte) 0x1c}, // 7z
+    {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd},     // zstd
+    {'R', 'a', 'r', '!'},                                     // rar
+    {'M', 'S', 'C', 'F'},                                     // cab
+    {(byte) 0xed, (byte) 0xab, (byte) 0xee, (byte) 0xdb},     // rpm, the payload is compressed
+    {(byte) 0x89, 'P', 'N', 'G'},                             // png
+    {(byte) 0xff, (byte) 0xd8, (byte) 0xff}                   // jpeg
+  };
+
+  private CompressionPolicy() {
+    // don't instantiate me...
+  }
+
+  /**
+   * @param file The file to check
+   * @param size The size of the file
+   * @return true if the file is already compressed and should be stored as is
+   * @throws IOException if the sample can't be read
+   */
+  public static boolean isCompressed(Path file, long size) throws IOException {
+    if (size < MIN_SIZE_TO_CHECK) {
+      return false;
+    }
+    if (COMPRESSED_EXTENSIONS.contains(extension(file))) {
+      return true;
+    }
+    byte[] sample = new byte[SAMPLE_SIZE];
+    int length = 0;
+    try (InputStream input = Files.newInputStream(file)) {
+      int read;
+      while (length < sample.length
+        && (read = input.read(sample, length, sample.length - length)) >= 0) {
+        length += read;
+      }
+    }
+    return hasCompressedMagic(sample, length) || entropy(sample, length) > ENTROPY_THRESHOLD;
+  }
+
+  static String extension(Path file) {
+    String name = file.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+  }
+
+  static boolean hasCompressedMagic(byte[] sample, int length) {
+    for (byte[] magic : COMPRESSED_MAGICS) {
+      if (length >= magic.length) {
+        boolean matches = true;
+        for (int i = 0; i < magic.length && matches; i++) {
+          matches = sample[i] == magic[i];
+        }
+        if (matches) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return Shannon entropy of the sample in bits per byte, between 0 and 8
+   */
+  static double entropy(byte[] sample, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    int[] counts = new int[256];
+    for (int i = 0; i < length; i++) {
+      counts[sample[i] & 0xff]++;
+    }
+    double entropy = 0;
+    for (int count : counts) {
+      if (count > 0) {
+        double p = (double) count / length;
+        entropy -= p * Math.log(p) / Math.log(2);
+      }
+    }
+    return entropy;
+  }
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Finds files with identical content, so that only one copy of each is packaged. Build outputs
+ * often have the same jar copied to every module.
+ *
+ * Only files which share their size with another file can be duplicates, so only those are
+ * hashed. Of identical files the first one in the manifest is packaged.
+ */
+public final class Deduplicator {
+
+  private Deduplicator() {
+    // don't instantiate me...
+  }
+
+  /**
+   * @param root The directory the manifest paths are relative to
+   * @param manifest The files to check
+   * @return The paths of the duplicates keyed by the path of the copy which is packaged. Empty
+   * if there are no duplicates.
+   * @throws IOException if a file can't be read
+   */
+  public static Map<String, List<String>> findDuplicates(Path root, FileManifest manifest)
+    throws IOException {
+    Map<Long, List<FileManifest.Entry>> bySize = manifest.getEntries().stream()
+      .collect(Collectors.groupingBy(FileManifest.Entry::getSize));
+
+    Map<String, List<String>> duplicates = new HashMap<>();
+    ChannelReader reader = new ChannelReader();
+    for (List<FileManifest.Entry> sameSize : bySize.values()) {
+      if (sameSize.size() < 2) {
+        continue;
+      }
+      // Insertion order keeps the first file of the manifest as the packaged copy
+      Map<ContentKey, List<String>> byContent = new LinkedHashMap<>();
+      for (FileManifest.Entry entry : sameSize) {
+        ContentKey key = new ContentKey(sha256(root.resolve(entry.getRelativePath()), reader));
+        byContent.computeIfAbsent(key, k -> new ArrayList<>()).add(entry.getRelativePath());
+      }
+      for (List<String> paths : byContent.values()) {
+        if (paths.size() > 1) {
+          duplicates.put(paths.get(0), new ArrayList<>(paths.subList(1, paths.size())));
+        }
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * @param manifest The files found
+   * @param duplicates As returned by findDuplicates
+   * @return The manifest without the duplicates, the packaged copies are kept
+   */
+  public static FileManifest withoutDuplicates(
+    FileManifest manifest,
+    Map<String, List<String>> duplicates
+  ) {
+    if (duplicates.isEmpty()) {
+      return manifest;
+    }
+    Set<String> left = new HashSet<>();
+    duplicates.values().forEach(left::addAll);
+    FileManifest unique = new FileManifest(manifest.getEntries().stream()
+      .filter(entry -> !left.contains(entry.getRelativePath()))
+      .collect(Collectors.toList()));
+    unique.setFingerprint(manifest.getFingerprint());
+    return unique;
+  }
+
+  private static byte[] sha256(Path file, ChannelReader reader) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM has SHA-256
+      throw new IllegalStateException(e);
+    }
+    reader.read(file, (data, length) -> digest.update(data, 0, length));
+    return digest.digest();
+  }
+
+  /** Hash of a file's content usable as a map key */
+  private static final class ContentKey {
+    private final byte[] hash;
+
+    ContentKey(byte[] hash) {
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof ContentKey && Arrays.equals(hash, ((ContentKey) other).hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(hash);
+    }
+  }
+}
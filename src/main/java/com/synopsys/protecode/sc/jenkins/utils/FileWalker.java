@@ -0,0 +1,261 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Walks a directory structure with NIO and collects the files to scan. This class is meant to be
+ * run on the machine where the files are, i.e. inside a file callable on the agent, so that the
+ * whole walk costs only one remote call.
+ *
+ * Both the sequential and the parallel walk produce the same manifest for the same directory.
+ */
+public final class FileWalker {
+
+  private static final Logger LOGGER = Logger.getLogger(FileWalker.class.getName());
+
+  private FileWalker() {
+    // don't instantiate me...
+  }
+
+  /**
+   * Lists the files in the given directory.
+   *
+   * @param root The directory to walk
+   * @param includeSubdirectories If true the whole directory structure is walked
+   * @param pattern Regexp which the file name must match
+   * @param globs Include and exclude globs for the relative path. Excluded directories are not read.
+   * @return The manifest of found files sorted by relative path
+   * @throws IOException if the walk can't be started at all
+   */
+  public static FileManifest walk(
+    Path root,
+    boolean includeSubdirectories,
+    Pattern pattern,
+    GlobFilter globs
+  ) throws IOException {
+    List<FileManifest.Entry> entries = new ArrayList<>();
+    Files.walkFileTree(
+      root,
+      // FilePath.isDirectory() follows links, keep doing the same. Loops are reported to
+      // visitFileFailed.
+      EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+      includeSubdirectories ? Integer.MAX_VALUE : 1,
+      new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+          if (!dir.equals(root) && globs.prunes(relativePath(root, dir))) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          // with max depth 1 directories are visited as files
+          if (!attrs.isDirectory() && matches(root, file, pattern, globs)) {
+            entries.add(entry(root, file, attrs));
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          // just ignore, DO NOT throw upwards
+          LOGGER.log(Level.FINE, "Could not read: {0}", file);
+          return FileVisitResult.CONTINUE;
+        }
+      }
+    );
+    entries.sort(Comparator.comparing(FileManifest.Entry::getRelativePath));
+    return new FileManifest(entries);
+  }
+
+  /**
+   * Lists the files in the whole directory structure using a fork/join pool. Every directory is
+   * listed in its own task, so very wide and deep structures are read with several threads. The
+   * result is sorted and thus identical to the result of
+   * {@link #walk(Path, boolean, Pattern, GlobFilter)}.
+   *
+   * @param root The directory to walk
+   * @param pattern Regexp which the file name must match
+   * @param globs Include and exclude globs for the relative path. Excluded directories are not read.
+   * @param parallelism The amount of threads used for the walk
+   * @return The manifest of found files sorted by relative path
+   */
+  public static FileManifest walkParallel(
+    Path root,
+    Pattern pattern,
+    GlobFilter globs,
+    int parallelism
+  ) {
+    BasicFileAttributes rootAttrs = attributes(root);
+    if (rootAttrs == null || !rootAttrs.isDirectory()) {
+      return new FileManifest();
+    }
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<FileManifest.Entry> entries = pool.invoke(
+        new DirectoryTask(
+          root, root, pattern, globs, Collections.singletonList(fileKey(root, rootAttrs))
+        )
+      );
+      entries.sort(Comparator.comparing(FileManifest.Entry::getRelativePath));
+      return new FileManifest(entries);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Lists one directory, forks a task for each subdirectory and joins their results.
+   * The task is never serialized, even though ForkJoinTask is Serializable.
+   */
+  @SuppressFBWarnings("SE_BAD_FIELD")
+  private static final class DirectoryTask extends RecursiveTask<List<FileManifest.Entry>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Path root;
+    private final Path directory;
+    private final Pattern pattern;
+    private final GlobFilter globs;
+    /** File keys of this directory and all its parents, used to detect link loops */
+    private final List<Object> ancestors;
+
+    DirectoryTask(
+      Path root,
+      Path directory,
+      Pattern pattern,
+      GlobFilter globs,
+      List<Object> ancestors
+    ) {
+      this.root = root;
+      this.directory = directory;
+      this.pattern = pattern;
+      this.globs = globs;
+      this.ancestors = ancestors;
+    }
+
+    @Override
+    protected List<FileManifest.Entry> compute() {
+      List<FileManifest.Entry> found = new ArrayList<>();
+      List<DirectoryTask> subtasks = new ArrayList<>();
+      try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+        for (Path child : children) {
+          BasicFileAttributes attrs = attributes(child);
+          if (attrs == null) {
+            LOGGER.log(Level.FINE, "Could not read: {0}", child);
+          } else if (attrs.isDirectory()) {
+            if (globs.prunes(relativePath(root, child))) {
+              LOGGER.log(Level.FINEST, "Skipping excluded directory: {0}", child);
+              continue;
+            }
+            Object key = fileKey(child, attrs);
+            if (ancestors.contains(key)) {
+              LOGGER.log(Level.FINE, "Skipping link loop: {0}", child);
+            } else {
+              List<Object> childAncestors = new ArrayList<>(ancestors);
+              childAncestors.add(key);
+              subtasks.add(new DirectoryTask(root, child, pattern, globs, childAncestors));
+            }
+          } else if (matches(root, child, pattern, globs)) {
+            found.add(entry(root, child, attrs));
+          }
+        }
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "Could not read: {0}", directory);
+      }
+      invokeAll(subtasks);
+      for (DirectoryTask subtask : subtasks) {
+        found.addAll(subtask.join());
+      }
+      return found;
+    }
+  }
+
+  /**
+   * Reads attributes the same way Files.walkFileTree does when following links: broken links are
+   * read as links.
+   *
+   * @param path The file to read
+   * @return The attributes or null if they can't be read
+   */
+  private static BasicFileAttributes attributes(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException e) {
+      try {
+        return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      } catch (IOException ex) {
+        return null;
+      }
+    }
+  }
+
+  private static Object fileKey(Path path, BasicFileAttributes attrs) {
+    Object key = attrs.fileKey();
+    if (key != null) {
+      return key;
+    }
+    // Not all file systems provide keys
+    try {
+      return path.toRealPath();
+    } catch (IOException e) {
+      return path.toAbsolutePath().normalize();
+    }
+  }
+
+  private static boolean matches(Path root, Path file, Pattern pattern, GlobFilter globs) {
+    return pattern.matcher(file.getFileName().toString()).matches()
+      && globs.includes(relativePath(root, file));
+  }
+
+  static FileManifest.Entry entry(Path root, Path file, BasicFileAttributes attrs) {
+    return new FileManifest.Entry(
+      relativePath(root, file),
+      attrs.size(),
+      attrs.lastModifiedTime().toMillis()
+    );
+  }
+
+  /**
+   * @param root The scanned directory
+   * @param file A file somewhere below root
+   * @return The path of the file relative to the root, separated with "/" on all platforms
+   */
+  static String relativePath(Path root, Path file) {
+    return root.relativize(file).toString().replace(File.separatorChar, '/');
+  }
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Ant style include and exclude globs, e.g. "**&#47;*.jar" or "**&#47;node_modules/**". The globs
+ * are compiled once to regular expressions and matched against paths relative to the scanned
+ * directory. The filter is sent to the agent with the directory walk.
+ *
+ * Glob syntax:
+ * <ul>
+ *   <li>"*" matches any characters within one path element</li>
+ *   <li>"?" matches one character within one path element</li>
+ *   <li>"**" matches any amount of path elements</li>
+ *   <li>A glob ending with "/" is treated as if it ended with "/**"</li>
+ * </ul>
+ */
+public final class GlobFilter implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Filter which includes everything.
+   */
+  public static final GlobFilter ALL = new GlobFilter(
+    Collections.emptyList(), Collections.emptyList(), Collections.emptyList()
+  );
+
+  private static final String ANY_DEPTH_SUFFIX = "/**";
+
+  private final List<Pattern> includes;
+  private final List<Pattern> excludes;
+  /** Excludes which cover whole directories, for pruning the walk */
+  private final List<Pattern> excludedDirectories;
+
+  private GlobFilter(
+    List<Pattern> includes,
+    List<Pattern> excludes,
+    List<Pattern> excludedDirectories
+  ) {
+    this.includes = includes;
+    this.excludes = excludes;
+    this.excludedDirectories = excludedDirectories;
+  }
+
+  /**
+   * Compiles the given glob lists.
+   *
+   * @param includes Comma separated include globs. Empty or null includes all files.
+   * @param excludes Comma separated exclude globs. Empty or null excludes nothing.
+   * @return A compiled filter
+   */
+  public static GlobFilter of(String includes, String excludes) {
+    List<Pattern> includePatterns = new ArrayList<>();
+    for (String glob : split(includes)) {
+      includePatterns.add(toPattern(glob));
+    }
+    List<Pattern> excludePatterns = new ArrayList<>();
+    List<Pattern> directoryPatterns = new ArrayList<>();
+    for (String glob : split(excludes)) {
+      excludePatterns.add(toPattern(glob));
+      if (glob.endsWith(ANY_DEPTH_SUFFIX)) {
+        directoryPatterns.add(
+          toPattern(glob.substring(0, glob.length() - ANY_DEPTH_SUFFIX.length()))
+        );
+      }
+    }
+    if (includePatterns.isEmpty() && excludePatterns.isEmpty()) {
+      return ALL;
+    }
+    return new GlobFilter(includePatterns, excludePatterns, directoryPatterns);
+  }
+
+  /**
+   * @param relativePath Path of a file relative to the scanned directory, separated with "/"
+   * @return true if the file is included and not excluded
+   */
+  public boolean includes(String relativePath) {
+    if (!includes.isEmpty() && includes.stream().noneMatch(
+      (include) -> include.matcher(relativePath).matches())) {
+      return false;
+    }
+    return excludes.stream().noneMatch((exclude) -> exclude.matcher(relativePath).matches());
+  }
+
+  /**
+   * @param relativePath Path of a directory relative to the scanned directory, separated with "/"
+   * @return true if all content of the directory is excluded and the directory needn't be read
+   */
+  public boolean prunes(String relativePath) {
+    return excludedDirectories.stream().anyMatch(
+      (exclude) -> exclude.matcher(relativePath).matches()
+    );
+  }
+
+  private static List<String> split(String globs) {
+    List<String> result = new ArrayList<>();
+    if (globs == null) {
+      return result;
+    }
+    for (String glob : globs.split(",")) {
+      String cleanGlob = glob.trim().replace('\\', '/');
+      while (cleanGlob.startsWith("./")) {
+        cleanGlob = cleanGlob.substring(2);
+      }
+      if (cleanGlob.startsWith("/")) {
+        cleanGlob = cleanGlob.substring(1);
+      }
+      if (cleanGlob.endsWith("/")) {
+        cleanGlob = cleanGlob + "**";
+      }
+      if (!cleanGlob.isEmpty()) {
+        result.add(cleanGlob);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Converts an Ant style glob to a regular expression
+   *
+   * @param glob The glob to convert
+   * @return A pattern matching the same paths as the glob
+   */
+  static Pattern toPattern(String glob) {
+    StringBuilder regex = new StringBuilder();
+    int i = 0;
+    while (i < glob.length()) {
+      char c = glob.charAt(i);
+      if (glob.startsWith("**/", i)) {
+        // zero or more directories
+        regex.append("(?:.*/)?");
+        i += 3;
+      } else if (glob.startsWith("**", i)) {
+        regex.append(".*");
+        i += 2;
+      } else if (c == '*') {
+        regex.append("[^/]*");
+        i++;
+      } else if (c == '?') {
+        regex.append("[^/]");
+        i++;
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+        i++;
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the found files into shards of about equal size, so that the shards can be uploaded and
+ * scanned in parallel.
+ *
+ * The split is the longest processing time first heuristic: the largest group of files goes to
+ * the shard with the least bytes so far. Files of equal size are kept in the same shard, since
+ * only files of equal size can be identical and duplicates are found within one package. A group
+ * larger than a fair share of the bytes is split file by file, balance goes first.
+ */
+public final class ManifestPartitioner {
+
+  private ManifestPartitioner() {
+    // don't instantiate me...
+  }
+
+  /**
+   * @param manifest The files to split
+   * @param shards The wanted number of shards
+   * @return The shards with their files in manifest order. Fewer than asked if there are fewer
+   * groups of files than shards, never empty shards.
+   */
+  public static List<FileManifest> partition(FileManifest manifest, int shards) {
+    if (shards <= 1 || manifest.size() <= 1) {
+      List<FileManifest> single = new ArrayList<>();
+      single.add(manifest);
+      return single;
+    }
+
+    long fairShare = manifest.totalSize() / shards;
+    Collection<List<FileManifest.Entry>> groups = manifest.getEntries().stream()
+      .collect(Collectors.groupingBy(FileManifest.Entry::getSize)).values();
+    List<List<FileManifest.Entry>> largestFirst = new ArrayList<>();
+    for (List<FileManifest.Entry> group : groups) {
+      if (group.size() > 1 && groupSize(group) > fairShare) {
+        group.forEach((entry) -> largestFirst.add(Collections.singletonList(entry)));
+      } else {
+        largestFirst.add(group);
+      }
+    }
+    largestFirst.sort(Comparator.comparingLong(ManifestPartitioner::groupSize).reversed()
+      .thenComparing((group) -> group.get(0).getRelativePath()));
+
+    PriorityQueue<Shard> smallestFirst = new PriorityQueue<>(
+      Comparator.comparingLong((Shard shard) -> shard.bytes).thenComparingInt(shard -> shard.index)
+    );
+    for (int i = 0; i < Math.min(shards, largestFirst.size()); i++) {
+      smallestFirst.add(new Shard(i));
+    }
+    for (List<FileManifest.Entry> group : largestFirst) {
+      Shard shard = smallestFirst.poll();
+      shard.entries.addAll(group);
+      shard.bytes += groupSize(group);
+      smallestFirst.add(shard);
+    }
+
+    List<Shard> ordered = new ArrayList<>(smallestFirst);
+    ordered.sort(Comparator.comparingInt(shard -> shard.index));
+    List<FileManifest> partitions = new ArrayList<>();
+    for (Shard shard : ordered) {
+      shard.entries.sort(Comparator.comparing(FileManifest.Entry::getRelativePath));
+      partitions.add(new FileManifest(shard.entries));
+    }
+    return partitions;
+  }
+
+  private static long groupSize(List<FileManifest.Entry> group) {
+    return group.stream().mapToLong(FileManifest.Entry::getSize).sum();
+  }
+
+  private static final class Shard {
+    final int index;
+    final List<FileManifest.Entry> entries = new ArrayList<>();
+    long bytes = 0;
+
+    Shard(int index) {
+      this.index = index;
+    }
+  }
+}
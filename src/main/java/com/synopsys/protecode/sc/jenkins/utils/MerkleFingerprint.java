@@ -0,0 +1,119 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes a Merkle tree fingerprint of a set of files. Every file is a leaf hashed from its name
+ * and content, every directory is a node hashed from the names and hashes of its children. The
+ * root hash changes if any file is added, removed, renamed or changed, and doesn't depend on
+ * timestamps or on the order of the listing.
+ *
+ * Meant to be run on the agent, where the files can be read locally.
+ */
+public final class MerkleFingerprint {
+
+  private static final String ALGORITHM = "SHA-256";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private MerkleFingerprint() {
+    // don't instantiate me...
+  }
+
+  /**
+   * @param root The directory the manifest paths are relative to
+   * @param manifest The files to fingerprint
+   * @return The root hash as a hex string
+   * @throws IOException if a file can't be read
+   */
+  public static String compute(Path root, FileManifest manifest) throws IOException {
+    Node tree = new Node();
+    for (FileManifest.Entry entry : manifest.getEntries()) {
+      Node node = tree;
+      for (String name : entry.getRelativePath().split("/")) {
+        node = node.children.computeIfAbsent(name, (key) -> new Node());
+      }
+      node.contentHash = contentHash(root.resolve(entry.getRelativePath()));
+    }
+    return toHex(tree.hash());
+  }
+
+  /**
+   * A file or a directory in the tree. Files have a content hash, directories have children.
+   */
+  private static final class Node {
+    private final Map<String, Node> children = new TreeMap<>();
+    private byte[] contentHash = null;
+
+    byte[] hash() {
+      MessageDigest digest = digest();
+      if (contentHash != null) {
+        digest.update((byte) 'f');
+        digest.update(contentHash);
+      } else {
+        digest.update((byte) 'd');
+        for (Map.Entry<String, Node> child : children.entrySet()) {
+          byte[] name = child.getKey().getBytes(StandardCharsets.UTF_8);
+          digest.update(intBytes(name.length));
+          digest.update(name);
+          digest.update(child.getValue().hash());
+        }
+      }
+      return digest.digest();
+    }
+  }
+
+  private static byte[] contentHash(Path file) throws IOException {
+    MessageDigest digest = digest();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream input = Files.newInputStream(file)) {
+      int length;
+      while ((length = input.read(buffer)) >= 0) {
+        digest.update(buffer, 0, length);
+      }
+    }
+    return digest.digest();
+  }
+
+  private static MessageDigest digest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM must provide SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static byte[] intBytes(int value) {
+    return new byte[] {
+      (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value
+    };
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b & 0xff));
+    }
+    return hex.toString();
+  }
+}
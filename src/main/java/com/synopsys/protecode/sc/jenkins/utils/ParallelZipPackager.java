@@ -0,0 +1,674 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.PackagingStats;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the files of a manifest as a zip using a pool of threads. The output is a normal zip, it
+ * can be read with any unzip.
+ *
+ * The files are split into chunks of 1 MB which are deflated independently, the way pigz does
+ * it. Every chunk but the last of a file ends with a sync flush, so the chunks concatenate into
+ * one deflate stream. A chunk is primed with the 32 KB before it, so the compression is almost as
+ * good as deflating the whole file in one go. The chunk CRCs are combined into the CRC of the
+ * file. Only the calling thread writes, in manifest order, and only a bounded number of chunks
+ * are in flight, so the memory used doesn't depend on the size of the files.
+ *
+ * Deflated entries are followed by a data descriptor, since their size is known only after the
+ * last chunk. Stored entries need the CRC in the local header, so their chunks only compute the
+ * CRC and the file is copied when the header has been written. Zip64 records are written when
+ * sizes, offsets or the entry count don't fit in the classic zip format.
+ *
+ * The chunks don't depend on the number of threads, so neither do the bytes of the zip. With the
+ * reproducible option every entry gets the same timestamp, and the zip depends only on the files.
+ */
+public final class ParallelZipPackager {
+
+  /** Uncompressed bytes handled by one task */
+  static final int CHUNK_SIZE = 1024 * 1024;
+  /** The deflate window, a chunk is primed with this much of the data before it */
+  static final int DICTIONARY_SIZE = 32 * 1024;
+  /** Chunks in flight per thread. Bounds the memory used to a few MB per thread. */
+  private static final int CHUNKS_PER_THREAD = 2;
+
+  /** Per pool thread, an array for the chunk and its dictionary */
+  private static final ThreadLocal<byte[]> INPUTS =
+    ThreadLocal.withInitial(() -> new byte[DICTIONARY_SIZE + CHUNK_SIZE]);
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final int VERSION = 20;
+  private static final int VERSION_ZIP64 = 45;
+  private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+  private static final int FLAG_UTF8 = 0x0800;
+  private static final int METHOD_STORED = 0;
+  private static final int METHOD_DEFLATED = 8;
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+  /** 1980-01-01 00:00, the earliest MS-DOS time. Every entry of a reproducible zip has it. */
+  private static final long EARLIEST_DOS_TIME = (1 << 21) | (1 << 16);
+  /** How long the stopped pool threads are waited for before their files are closed */
+  private static final long POOL_STOP_SECONDS = 10;
+
+  private ParallelZipPackager() {
+    // don't instantiate me...
+  }
+
+  /**
+   * Writes the zip. The given stream is flushed but not closed.
+   *
+   * @param root The directory the manifest paths are relative to
+   * @param manifest The files to package
+   * @param options How to package the files, the number of threads included
+   * @param out The stream to write the zip to
+   * @return Figures of the packaging, the CPU time is the sum over all threads
+   * @throws IOException if reading a file or writing the zip fails
+   */
+  public static PackagingStats write(
+    Path root,
+    FileManifest manifest,
+    PackagingOptions options,
+    OutputStream out
+  ) throws IOException {
+    int threads = Math.max(1, options.getThreads());
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "protecode-zip-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    Writer writer = new Writer(root, manifest, options, out, pool, threads * CHUNKS_PER_THREAD);
+    try {
+      return writer.write();
+    } finally {
+      pool.shutdownNow();
+      try {
+        // A read is interrupted at once, the chunks left don't run
+        pool.awaitTermination(POOL_STOP_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      writer.closeReaders();
+    }
+  }
+
+  /**
+   * Writer of one zip. Used only by the calling thread, the pool only runs the chunk tasks.
+   */
+  private static final class Writer {
+    private final Path root;
+    private final Iterator<FileManifest.Entry> entries;
+    private final PackagingOptions options;
+    private final ZipOutput out;
+    private final ExecutorService pool;
+    private final int maxPending;
+    private final Deque<Job> pending = new ArrayDeque<>();
+    private final List<Planned> written = new ArrayList<>();
+    private final PackagingStats stats = new PackagingStats();
+    private final AtomicLong workerCpuNanos = new AtomicLong();
+    private final AtomicLong workerReadBytes = new AtomicLong();
+    private final AtomicLong workerReadNanos = new AtomicLong();
+    /** Reads the stored files, which are copied by the calling thread */
+    private final ChannelReader reader = new ChannelReader();
+    /** The readers of the pool threads, each keeps the file of its latest chunk open */
+    private final List<ChannelReader> workerReaders = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ChannelReader> readers = ThreadLocal.withInitial(() -> {
+      ChannelReader workerReader = new ChannelReader();
+      workerReaders.add(workerReader);
+      return workerReader;
+    });
+    private Planned submitting = null;
+
+    Writer(
+      Path root,
+      FileManifest manifest,
+      PackagingOptions options,
+      OutputStream out,
+      ExecutorService pool,
+      int maxPending
+    ) {
+      this.root = root;
+      this.entries = manifest.getEntries().iterator();
+      this.options = options;
+      this.out = new ZipOutput(out);
+      this.pool = pool;
+      this.maxPending = maxPending;
+    }
+
+    PackagingStats write() throws IOException {
+      long startCpu = ZipPackager.cpuTime();
+      long start = System.nanoTime();
+
+      submit();
+      while (!pending.isEmpty()) {
+        Job job = pending.poll();
+        Chunk chunk = await(job.future);
+        // Keep the pool busy while this chunk is written
+        submit();
+
+        Planned planned = job.planned;
+        if (job.index == 0 && !planned.store) {
+          writeLocalHeader(planned);
+        }
+        planned.crc = combineCrc(planned.crc, chunk.crc, chunk.length);
+        planned.size += chunk.length;
+        if (!planned.store) {
+          out.write(chunk.data, 0, chunk.dataLength);
+          planned.compressedSize += chunk.dataLength;
+        }
+        if (job.index == planned.chunks - 1) {
+          finishEntry(planned);
+        }
+      }
+      writeCentralDirectory();
+      out.flush();
+
+      stats.setWallNanos(System.nanoTime() - start);
+      stats.setCpuNanos(ZipPackager.cpuTime() - startCpu + workerCpuNanos.get());
+      stats.addRead(workerReadBytes.get(), workerReadNanos.get());
+      stats.addRead(reader.getBytesRead(), reader.getReadNanos());
+      return stats;
+    }
+
+    /**
+     * Submits chunks in manifest order until the limit of chunks in flight is reached.
+     */
+    private void submit() throws IOException {
+      while (pending.size() < maxPending) {
+        if (submitting == null || submitting.submitted == submitting.chunks) {
+          if (!entries.hasNext()) {
+            return;
+          }
+          submitting = plan(entries.next());
+        }
+        Planned planned = submitting;
+        int index = planned.submitted++;
+        long offset = (long) index * CHUNK_SIZE;
+        int length = (int) Math.min(CHUNK_SIZE, Math.max(0, planned.entry.getSize() - offset));
+        boolean last = index == planned.chunks - 1;
+        Future<Chunk> future = pool.submit(() -> {
+          long startCpu = ZipPackager.cpuTime();
+          ChannelReader chunkReader = readers.get();
+          long bytesBefore = chunkReader.getBytesRead();
+          long nanosBefore = chunkReader.getReadNanos();
+          Chunk chunk = process(
+            chunkReader,
+            INPUTS.get(),
+            planned.file,
+            offset,
+            length,
+            last,
+            planned.store,
+            options.getCompressionLevel()
+          );
+          workerReadBytes.addAndGet(chunkReader.getBytesRead() - bytesBefore);
+          workerReadNanos.addAndGet(chunkReader.getReadNanos() - nanosBefore);
+          workerCpuNanos.addAndGet(ZipPackager.cpuTime() - startCpu);
+          return chunk;
+        });
+        pending.add(new Job(planned, index, future));
+      }
+    }
+
+    /**
+     * Closes the files the pool threads kept open, after the threads have stopped. A read which
+     * hasn't stopped yet holds its reader, the file is closed once the read ends.
+     */
+    void closeReaders() {
+      for (ChannelReader workerReader : workerReaders) {
+        try {
+          workerReader.close();
+        } catch (IOException e) {
+          // The files were only read, the zip is complete or failed already
+        }
+      }
+    }
+
+    private Planned plan(FileManifest.Entry entry) throws IOException {
+      Path file = root.resolve(entry.getRelativePath());
+      boolean store = options.isStoreCompressed()
+        && CompressionPolicy.isCompressed(file, entry.getSize());
+      long dosTime = options.isReproducible()
+        ? EARLIEST_DOS_TIME
+        : dosTime(entry.getLastModified());
+      return new Planned(entry, file, store, dosTime);
+    }
+
+    private void writeLocalHeader(Planned planned) throws IOException {
+      planned.localHeaderOffset = out.written;
+      boolean zip64 = planned.store && planned.size >= ZIP64_MAGIC;
+      out.writeInt(LOCAL_HEADER_SIGNATURE);
+      out.writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+      out.writeShort(planned.flags());
+      out.writeShort(planned.method());
+      out.writeInt(planned.dosTime);
+      if (planned.store) {
+        out.writeInt(planned.crc);
+        out.writeInt(zip64 ? ZIP64_MAGIC : planned.size);
+        out.writeInt(zip64 ? ZIP64_MAGIC : planned.size);
+      } else {
+        // In the data descriptor
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(0);
+      }
+      out.writeShort(planned.name.length);
+      out.writeShort(zip64 ? 20 : 0);
+      out.write(planned.name, 0, planned.name.length);
+      if (zip64) {
+        out.writeShort(ZIP64_EXTRA_ID);
+        out.writeShort(16);
+        out.writeLong(planned.size);
+        out.writeLong(planned.size);
+      }
+    }
+
+    private void finishEntry(Planned planned) throws IOException {
+      if (planned.store) {
+        writeLocalHeader(planned);
+        copy(planned);
+        planned.compressedSize = planned.size;
+        stats.addStored(planned.size);
+      } else {
+        out.writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        out.writeInt(planned.crc);
+        if (planned.size >= ZIP64_MAGIC || planned.compressedSize >= ZIP64_MAGIC) {
+          out.writeLong(planned.compressedSize);
+          out.writeLong(planned.size);
+        } else {
+          out.writeInt(planned.compressedSize);
+          out.writeInt(planned.size);
+        }
+        stats.addDeflated(planned.size, planned.compressedSize);
+      }
+      written.add(planned);
+    }
+
+    /**
+     * Copies a stored file. The CRC was computed from the chunks, so the copy must have exactly
+     * as many bytes.
+     */
+    private void copy(Planned planned) throws IOException {
+      long[] remaining = {planned.size};
+      reader.read(planned.file, (data, length) -> {
+        int copied = (int) Math.min(length, remaining[0]);
+        out.write(data, 0, copied);
+        remaining[0] -= copied;
+      });
+      if (remaining[0] > 0) {
+        throw new IOException("File changed while packaging: " + planned.file);
+      }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+      long centralStart = out.written;
+      for (Planned planned : written) {
+        boolean zip64Size = planned.size >= ZIP64_MAGIC;
+        boolean zip64CompressedSize = planned.compressedSize >= ZIP64_MAGIC;
+        boolean zip64Offset = planned.localHeaderOffset >= ZIP64_MAGIC;
+        int extraLength = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0)
+          + (zip64Offset ? 8 : 0);
+        if (extraLength > 0) {
+          extraLength += 4;
+        }
+        int version = extraLength > 0 ? VERSION_ZIP64 : VERSION;
+
+        out.writeInt(CENTRAL_HEADER_SIGNATURE);
+        out.writeShort(version);
+        out.writeShort(version);
+        out.writeShort(planned.flags());
+        out.writeShort(planned.method());
+        out.writeInt(planned.dosTime);
+        out.writeInt(planned.crc);
+        out.writeInt(zip64CompressedSize ? ZIP64_MAGIC : planned.compressedSize);
+        out.writeInt(zip64Size ? ZIP64_MAGIC : planned.size);
+        out.writeShort(planned.name.length);
+        out.writeShort(extraLength);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeInt(0);
+        out.writeInt(zip64Offset ? ZIP64_MAGIC : planned.localHeaderOffset);
+        out.write(planned.name, 0, planned.name.length);
+        if (extraLength > 0) {
+          out.writeShort(ZIP64_EXTRA_ID);
+          out.writeShort(extraLength - 4);
+          if (zip64Size) {
+            out.writeLong(planned.size);
+          }
+          if (zip64CompressedSize) {
+            out.writeLong(planned.compressedSize);
+          }
+          if (zip64Offset) {
+            out.writeLong(planned.localHeaderOffset);
+          }
+        }
+      }
+      long centralSize = out.written - centralStart;
+      int count = written.size();
+
+      if (count >= ZIP64_MAGIC_COUNT || centralStart >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC) {
+        long zip64EndOffset = out.written;
+        out.writeInt(ZIP64_END_SIGNATURE);
+        out.writeLong(44);
+        out.writeShort(VERSION_ZIP64);
+        out.writeShort(VERSION_ZIP64);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeLong(count);
+        out.writeLong(count);
+        out.writeLong(centralSize);
+        out.writeLong(centralStart);
+
+        out.writeInt(ZIP64_LOCATOR_SIGNATURE);
+        out.writeInt(0);
+        out.writeLong(zip64EndOffset);
+        out.writeInt(1);
+      }
+
+      out.writeInt(END_SIGNATURE);
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+      out.writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+      out.writeInt(Math.min(centralSize, ZIP64_MAGIC));
+      out.writeInt(Math.min(centralStart, ZIP64_MAGIC));
+      out.writeShort(0);
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while packaging files");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException("Packaging files failed", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Reads one chunk of a file. For a deflated file the chunk is deflated, for a stored file only
+   * the CRC is computed.
+   *
+   * @param reader Reader of the calling thread
+   * @param input Array of the calling thread, large enough for the dictionary and the chunk
+   */
+  static Chunk process(
+    ChannelReader reader,
+    byte[] input,
+    Path file,
+    long offset,
+    int length,
+    boolean last,
+    boolean store,
+    int level
+  ) throws IOException {
+    int dictionaryLength = store ? 0 : (int) Math.min(DICTIONARY_SIZE, offset);
+    int read = Math.max(0, reader.read(
+      file, offset - dictionaryLength, input, dictionaryLength + length
+    ) - dictionaryLength);
+    CRC32 crc = new CRC32();
+    crc.update(input, dictionaryLength, read);
+    if (store) {
+      return new Chunk(null, 0, crc.getValue(), read);
+    }
+
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (dictionaryLength > 0) {
+        deflater.setDictionary(input, 0, dictionaryLength);
+      }
+      deflater.setInput(input, dictionaryLength, read);
+      byte[] output = new byte[read + read / 1000 + 64];
+      int outputLength = 0;
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          if (outputLength == output.length) {
+            output = Arrays.copyOf(output, output.length * 2);
+          }
+          outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+        }
+      } else {
+        // A sync flush ends the chunk on a byte boundary without ending the deflate stream. When
+        // the output buffer isn't filled up, everything has been flushed.
+        do {
+          if (outputLength == output.length) {
+            output = Arrays.copyOf(output, output.length * 2);
+          }
+          outputLength += deflater.deflate(
+            output, outputLength, output.length - outputLength, Deflater.SYNC_FLUSH
+          );
+        } while (outputLength == output.length);
+      }
+      return new Chunk(output, outputLength, crc.getValue(), read);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Combines the CRC of two consecutive blocks of data, like crc32_combine of zlib.
+   *
+   * @param crc1 CRC of the first block
+   * @param crc2 CRC of the second block
+   * @param length2 Length of the second block
+   * @return CRC of both blocks together
+   */
+  static long combineCrc(long crc1, long crc2, long length2) {
+    if (length2 <= 0) {
+      return crc1;
+    }
+    long[] even = new long[32];
+    long[] odd = new long[32];
+
+    // Operator for one zero bit
+    odd[0] = 0xedb88320L;
+    long row = 1;
+    for (int n = 1; n < 32; n++) {
+      odd[n] = row;
+      row <<= 1;
+    }
+    // Operators for two and four zero bits
+    gf2MatrixSquare(even, odd);
+    gf2MatrixSquare(odd, even);
+
+    // Apply length2 zero bytes to crc1, the first square gives the operator for one zero byte
+    long length = length2;
+    do {
+      gf2MatrixSquare(even, odd);
+      if ((length & 1) != 0) {
+        crc1 = gf2MatrixTimes(even, crc1);
+      }
+      length >>= 1;
+      if (length == 0) {
+        break;
+      }
+      gf2MatrixSquare(odd, even);
+      if ((length & 1) != 0) {
+        crc1 = gf2MatrixTimes(odd, crc1);
+      }
+      length >>= 1;
+    } while (length != 0);
+    return crc1 ^ crc2;
+  }
+
+  private static long gf2MatrixTimes(long[] matrix, long vector) {
+    long sum = 0;
+    for (int i = 0; vector != 0; i++, vector >>= 1) {
+      if ((vector & 1) != 0) {
+        sum ^= matrix[i];
+      }
+    }
+    return sum;
+  }
+
+  private static void gf2MatrixSquare(long[] square, long[] matrix) {
+    for (int n = 0; n < 32; n++) {
+      square[n] = gf2MatrixTimes(matrix, matrix[n]);
+    }
+  }
+
+  /**
+   * @return The time in MS-DOS format, which has a two second precision and starts from 1980
+   */
+  static long dosTime(long millis) {
+    LocalDateTime time = LocalDateTime.ofInstant(
+      Instant.ofEpochMilli(millis), ZoneId.systemDefault()
+    );
+    if (time.getYear() < 1980) {
+      return EARLIEST_DOS_TIME;
+    }
+    return (long) (time.getYear() - 1980) << 25
+      | time.getMonthValue() << 21
+      | time.getDayOfMonth() << 16
+      | time.getHour() << 11
+      | time.getMinute() << 5
+      | time.getSecond() >> 1;
+  }
+
+  /** One file in the zip, filled in as its chunks are written */
+  private static final class Planned {
+    final FileManifest.Entry entry;
+    final Path file;
+    final boolean store;
+    final byte[] name;
+    final long dosTime;
+    final int chunks;
+    int submitted = 0;
+    long crc = 0;
+    long size = 0;
+    long compressedSize = 0;
+    long localHeaderOffset = 0;
+
+    Planned(FileManifest.Entry entry, Path file, boolean store, long dosTime) {
+      this.entry = entry;
+      this.file = file;
+      this.store = store;
+      this.name = entry.getRelativePath().getBytes(StandardCharsets.UTF_8);
+      this.dosTime = dosTime;
+      this.chunks = (int) Math.max(1, (entry.getSize() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    int flags() {
+      return store ? FLAG_UTF8 : FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+    }
+
+    int method() {
+      return store ? METHOD_STORED : METHOD_DEFLATED;
+    }
+  }
+
+  private static final class Job {
+    final Planned planned;
+    final int index;
+    final Future<Chunk> future;
+
+    Job(Planned planned, int index, Future<Chunk> future) {
+      this.planned = planned;
+      this.index = index;
+      this.future = future;
+    }
+  }
+
+  static final class Chunk {
+    /** Deflated data, null for stored files */
+    final byte[] data;
+    final int dataLength;
+    /** CRC and length of the uncompressed data of the chunk */
+    final long crc;
+    final int length;
+
+    Chunk(byte[] data, int dataLength, long crc, int length) {
+      this.data = data;
+      this.dataLength = dataLength;
+      this.crc = crc;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Little endian output which keeps count of the bytes written, for the offsets in the zip.
+   */
+  private static final class ZipOutput {
+    private final OutputStream out;
+    long written = 0;
+
+    ZipOutput(OutputStream out) {
+      this.out = new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+    }
+
+    void writeShort(int value) throws IOException {
+      out.write(value & 0xff);
+      out.write((value >>> 8) & 0xff);
+      written += 2;
+    }
+
+    void writeInt(long value) throws IOException {
+      writeShort((int) (value & 0xffff));
+      writeShort((int) ((value >>> 16) & 0xffff));
+    }
+
+    void writeLong(long value) throws IOException {
+      writeInt(value & ZIP64_MAGIC);
+      writeInt(value >>> 32);
+    }
+
+    void write(byte[] data, int offset, int length) throws IOException {
+      out.write(data, offset, length);
+      written += length;
+    }
+
+    void flush() throws IOException {
+      out.flush();
+    }
+  }
+}
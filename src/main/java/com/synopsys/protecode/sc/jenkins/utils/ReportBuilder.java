@@ -14,6 +14,7 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.synopsys.protecode.sc.jenkins.types.AggregateResult;
 import com.synopsys.protecode.sc.jenkins.types.FileResult;
 import com.synopsys.protecode.sc.jenkins.types.FileResult.SerializableResult;
 import hudson.FilePath;
@@ -49,6 +50,18 @@ public class ReportBuilder {
     return true;
   }
 
+  public static boolean report(
+    AggregateResult results,
+    TaskListener listener,
+    FilePath reportsDirectory,
+    Run <?,?> run
+  ) {
+    for (FileResult result : results.getResults()) {
+      report(result, listener, reportsDirectory, run);
+    }
+    return true;
+  }
+
   /**
    * Used for writing a report for a single scan/file
    */
@@ -0,0 +1,220 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.interfaces.ProtecodeScApi;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import retrofit2.Response;
+
+/**
+ * Uploads a file in chunks, so that a network error costs one chunk instead of the whole upload.
+ *
+ * Every chunk is a PUT to the upload URL with a Content-Range header. The server answers 308 with
+ * a Range header telling which bytes it has, and the next chunk starts after those. The last
+ * chunk is answered like a normal upload. When a chunk fails, the uploader waits, doubling the
+ * wait every time, and asks the server which bytes it has with an empty PUT whose Content-Range
+ * has "*" as the range. The upload goes on from there, so only the missing bytes are sent again.
+ *
+ * Protecode SC must support chunked uploads for this to work.
+ */
+public final class ResumableUploader {
+
+  /** Where the uploaded bytes are read from */
+  public interface Source {
+    long size() throws IOException, InterruptedException;
+
+    /**
+     * @param offset The first byte to read
+     * @return A stream from the given byte to the end, closed by the caller
+     */
+    InputStream openAt(long offset) throws IOException, InterruptedException;
+  }
+
+  /** The status with which the server acknowledges a chunk which wasn't the last */
+  static final int RESUME_INCOMPLETE = 308;
+
+  private static final Pattern RANGE = Pattern.compile("bytes=0-(\\d+)");
+  private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+  private static final Logger LOGGER = Logger.getLogger(ResumableUploader.class.getName());
+
+  private final ProtecodeScApi backend;
+  private final String group;
+  private final String fileName;
+  private final Source source;
+  private final int chunkSize;
+  private final int maxRetries;
+  private final long backoffMillis;
+  private UnaryOperator<RequestBody> chunkBody = UnaryOperator.identity();
+  private int retries = 0;
+
+  /**
+   * @param backend The API to upload with
+   * @param group The group of the product
+   * @param fileName The name of the file in Protecode SC
+   * @param source The content to upload
+   * @param chunkSize Bytes per chunk
+   * @param maxRetries How many times in a row a chunk may fail before the upload fails
+   * @param backoffMillis The wait after the first failure, doubled for every further failure
+   */
+  public ResumableUploader(
+    ProtecodeScApi backend,
+    String group,
+    String fileName,
+    Source source,
+    int chunkSize,
+    int maxRetries,
+    long backoffMillis
+  ) {
+    this.backend = backend;
+    this.group = group;
+    this.fileName = fileName;
+    this.source = source;
+    this.chunkSize = chunkSize;
+    this.maxRetries = maxRetries;
+    this.backoffMillis = backoffMillis;
+  }
+
+  /**
+   * @param chunkBody Wraps the body of every chunk, for example to throttle or count the bytes
+   */
+  public void wrapChunksWith(UnaryOperator<RequestBody> chunkBody) {
+    this.chunkBody = chunkBody;
+  }
+
+  /**
+   * Uploads the whole file.
+   *
+   * @return The response of Protecode SC to the last chunk
+   * @throws IOException if a chunk failed too many times in a row, the server refused it or the
+   * file can't be read
+   * @throws InterruptedException if the build is interrupted
+   */
+  public HttpTypes.UploadResponse upload() throws IOException, InterruptedException {
+    long size = source.size();
+    byte[] chunk = new byte[(int) Math.max(1, Math.min(chunkSize, size))];
+    long offset = 0;
+    int failures = 0;
+    while (true) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException("Upload of " + fileName + " was interrupted");
+      }
+      int length = (int) Math.min(chunkSize, size - offset);
+      read(offset, chunk, length);
+      Response<HttpTypes.UploadResponse> response = null;
+      try {
+        response = backend.scanChunk(
+          group,
+          fileName,
+          contentRange(offset, length, size),
+          chunkBody.apply(RequestBody.create(OCTET_STREAM, chunk, 0, length))
+        ).execute();
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "Chunk at {0} of {1} failed: {2}",
+          new Object[] {offset, fileName, e.getMessage()});
+      }
+
+      if (response != null && response.isSuccessful()) {
+        return response.body();
+      } else if (response != null && response.code() == RESUME_INCOMPLETE
+        && acknowledged(response) > offset) {
+        offset = acknowledged(response);
+        failures = 0;
+        continue;
+      } else if (response != null && response.code() == RESUME_INCOMPLETE) {
+        // The server kept none of the chunk, or its Range header can't be read
+        LOGGER.log(Level.FINE, "Chunk at {0} of {1} wasn't acknowledged",
+          new Object[] {offset, fileName});
+      } else if (response != null && response.code() < 500) {
+        throw new IOException("Protecode SC refused the upload of " + fileName + " with status "
+          + response.code());
+      }
+
+      failures++;
+      if (failures > maxRetries) {
+        throw new IOException("Upload of " + fileName + " failed " + failures + " times at byte "
+          + offset + " of " + size);
+      }
+      retries++;
+      Thread.sleep(backoffMillis << (failures - 1));
+      // The chunk may have arrived completely, in part or not at all
+      try {
+        Response<HttpTypes.UploadResponse> status = backend.scanChunk(
+          group,
+          fileName,
+          "bytes */" + size,
+          RequestBody.create(OCTET_STREAM, new byte[0])
+        ).execute();
+        if (status.isSuccessful()) {
+          return status.body();
+        } else if (status.code() == RESUME_INCOMPLETE) {
+          offset = acknowledged(status);
+        }
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "Asking for the status of {0} failed: {1}",
+          new Object[] {fileName, e.getMessage()});
+      }
+    }
+  }
+
+  /**
+   * @return How many times a chunk was sent again
+   */
+  public int getRetries() {
+    return retries;
+  }
+
+  static String contentRange(long offset, int length, long size) {
+    if (length == 0) {
+      return "bytes */" + size;
+    }
+    return "bytes " + offset + "-" + (offset + length - 1) + "/" + size;
+  }
+
+  /**
+   * @return The first byte the server doesn't have
+   */
+  private static long acknowledged(Response<?> response) {
+    String range = response.headers().get("Range");
+    if (range == null) {
+      return 0;
+    }
+    Matcher matcher = RANGE.matcher(range.trim());
+    if (!matcher.matches()) {
+      return 0;
+    }
+    return Long.parseLong(matcher.group(1)) + 1;
+  }
+
+  private void read(long offset, byte[] chunk, int length)
+    throws IOException, InterruptedException {
+    try (InputStream input = source.openAt(offset)) {
+      int read = 0;
+      while (read < length) {
+        int count = input.read(chunk, read, length - read);
+        if (count < 0) {
+          throw new EOFException("File " + fileName + " ended at " + (offset + read));
+        }
+        read += count;
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+/**
+ * Keeps a moving average of how long Protecode SC takes to scan a product, from the first poll
+ * until the product is ready. Used to estimate how much server time an aborted scan would still
+ * have taken.
+ */
+public final class ScanDurations {
+
+  /** Weight of the latest scan in the average */
+  static final double WEIGHT = 0.2;
+
+  private double averageMillis = 0;
+  private int scans = 0;
+
+  /**
+   * @param millis How long a finished scan took
+   */
+  public synchronized void add(long millis) {
+    if (millis < 0) {
+      return;
+    }
+    averageMillis = scans == 0 ? millis : averageMillis + WEIGHT * (millis - averageMillis);
+    scans++;
+  }
+
+  /**
+   * @return How many scans the average is of
+   */
+  public synchronized int getScans() {
+    return scans;
+  }
+
+  /**
+   * @return The average duration, 0 if no scan has finished yet
+   */
+  public synchronized long getAverageMillis() {
+    return Math.round(averageMillis);
+  }
+
+  /**
+   * @param elapsedMillis How long the scan has been running
+   * @return How much longer the scan would take on average, -1 if unknown
+   */
+  public synchronized long remaining(long elapsedMillis) {
+    if (scans == 0) {
+      return -1;
+    }
+    return Math.max(0, Math.round(averageMillis) - elapsedMillis);
+  }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes the uploads of one build have sent, for reporting the progress to the build
+ * console. The uploads count from the http client threads, the report is made by the build thread.
+ */
+public final class UploadProgress {
+
+  private static final double MEGABYTE = 1024.0 * 1024.0;
+
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicInteger uploads = new AtomicInteger();
+  private volatile boolean totalKnown = true;
+  /** When the first and the latest bytes were sent, 0 before any */
+  private final AtomicLong firstSent = new AtomicLong();
+  private volatile long lastSent = 0;
+  private long reportedBytes = 0;
+  private long reportedAt = System.nanoTime();
+
+  /**
+   * Adds an upload to the total.
+   *
+   * @param bytes The size of the upload, negative if it isn't known beforehand
+   */
+  public void expect(long bytes) {
+    uploads.incrementAndGet();
+    if (bytes < 0) {
+      totalKnown = false;
+    } else {
+      total.addAndGet(bytes);
+    }
+  }
+
+  /**
+   * @param bytes Bytes just sent, negative to take back the bytes of a failed attempt
+   */
+  public void sent(long bytes) {
+    sent(bytes, System.nanoTime());
+  }
+
+  void sent(long bytes, long now) {
+    sent.addAndGet(bytes);
+    firstSent.compareAndSet(0, now);
+    lastSent = now;
+  }
+
+  public long getSent() {
+    return sent.get();
+  }
+
+  /**
+   * @return The size of all uploads, -1 if some upload has no size beforehand
+   */
+  public long getTotal() {
+    return totalKnown ? total.get() : -1;
+  }
+
+  public int getUploads() {
+    return uploads.get();
+  }
+
+  /**
+   * @return The time from the first sent bytes to the latest ones
+   */
+  public long getSendingNanos() {
+    return firstSent.get() == 0 ? 0 : lastSent - firstSent.get();
+  }
+
+  /**
+   * @return Megabytes per second from the first sent bytes to the latest ones
+   */
+  public double throughput() {
+    long nanos = getSendingNanos();
+    return nanos == 0 ? 0 : sent.get() / MEGABYTE / (nanos / 1e9);
+  }
+
+  /**
+   * @return True if bytes have been sent since the latest report
+   */
+  public boolean changedSinceReport() {
+    return sent.get() != reportedBytes;
+  }
+
+  /**
+   * @return The bytes sent, the percentage done, the rate since the previous report and the time
+   * left at that rate. Percentage and time left only if the total is known.
+   */
+  public String report() {
+    return report(System.nanoTime());
+  }
+
+  synchronized String report(long now) {
+    long bytes = sent.get();
+    double rate = now > reportedAt
+      ? (bytes - reportedBytes) / MEGABYTE / ((now - reportedAt) / 1e9)
+      : 0;
+    reportedBytes = bytes;
+    reportedAt = now;
+
+    StringBuilder line = new StringBuilder(String.format("Uploaded %.1f MB", bytes / MEGABYTE));
+    long expected = getTotal();
+    if (expected > 0) {
+      line.append(String.format(" of %.1f MB (%d%%)",
+        expected / MEGABYTE, Math.min(100, bytes * 100 / expected)));
+    }
+    line.append(String.format(", %.1f MB/s", Math.max(0, rate)));
+    if (expected > 0 && rate > 0 && bytes < expected) {
+      line.append(", about ")
+        .append(duration((long) ((expected - bytes) / MEGABYTE / rate)))
+        .append(" left");
+    }
+    return line.toString();
+  }
+
+  static String duration(long seconds) {
+    if (seconds < 60) {
+      return seconds + " s";
+    }
+    return (seconds / 60) + " min " + (seconds % 60) + " s";
+  }
+}
@@ -12,20 +12,27 @@ package com.synopsys.protecode.sc.jenkins.utils;
 
 import com.synopsys.protecode.sc.jenkins.Configuration;
 import com.synopsys.protecode.sc.jenkins.ProtecodeScPlugin;
+import com.synopsys.protecode.sc.jenkins.types.AgentConnection;
+import com.synopsys.protecode.sc.jenkins.types.AgentUpload;
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.PackagingStats;
+import com.synopsys.protecode.sc.jenkins.types.UploadOutcome;
 import hudson.FilePath;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.remoting.Pipe;
 import hudson.remoting.VirtualChannel;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.StringTokenizer;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 import jenkins.MasterToSlaveFileCallable;
 
 // TODO: Change this to something like instantiable FileGetter or something. static isn't very nice.
@@ -87,148 +94,299 @@ public final class UtilitiesFile {
   }
 
   /**
-   * Returns files in a directory
+   * Returns the directory to scan in the workspace.
    *
    * @param fileDirectory Name of the directory to parse through for files
    * @param workspace The workspace to look for files in
+   * @return The directory to scan
+   */
+  public static FilePath scanDirectory(String fileDirectory, FilePath workspace) {
+    return workspace.child(cleanUrl(fileDirectory));
+  }
+
+  /**
+   * Returns files in a directory which conform to the pattern. The directory is walked on the
+   * machine where it resides in a single remote call, instead of listing and checking every file
+   * separately over the remoting channel.
+   *
+   * @param directory The directory to parse through for files
    * @param includeSubdirectories If true the method returns all files from the directory structure.
    * @param pattern Regexp to include only certain files. If all is required use
    * UtilitiesFile.ALL_FILES_PATTERN
-   * @param run Jenkins build run instance
+   * @param globs Include and exclude globs, excluded directories are not walked at all
+   * @param parallelism Threads used to walk subdirectories, 1 or less walks sequentially
+   * @param fingerprint If true the Merkle fingerprint of the file contents is computed also
    * @param listener Jenkins console
-   * @return list of files
+   * @return The manifest of files, empty if the directory couldn't be read
    */
-  public static Optional<FilePath> getFiles(
-    String fileDirectory,
-    FilePath workspace,
+  public static Optional<FileManifest> findFiles(
+    FilePath directory,
     boolean includeSubdirectories,
     Pattern pattern,
-    Run<?, ?> run,
+    GlobFilter globs,
+    int parallelism,
+    boolean fingerprint,
     TaskListener listener
   ) {
+    PrintStream log = listener.getLogger();
+    log.println("Looking for files in directory: " + directory);
+    int threads = Math.min(parallelism, Configuration.MAX_DISCOVERY_PARALLELISM);
     try {
-      FilePath directory = workspace.child(cleanUrl(fileDirectory));
-      PrintStream log = listener.getLogger();
-      log.println("Looking for files in directory: " + directory);
-
-      return Optional.of(
-        packageFiles(
-          directory, 
-          getFiles(directory, includeSubdirectories, pattern, log),
-          cleanJobName(run.getExternalizableId())
-        )
-      );
-    } catch (Exception e) {}
-    listener.error("Error while reading files from: " + fileDirectory);
+      FileManifest manifest = directory.act(new MasterToSlaveFileCallable<FileManifest>() {
+        @Override
+        public FileManifest invoke(File f, VirtualChannel channel) throws IOException {
+          FileManifest found;
+          if (includeSubdirectories && threads > 1) {
+            found = FileWalker.walkParallel(f.toPath(), pattern, globs, threads);
+          } else {
+            found = FileWalker.walk(f.toPath(), includeSubdirectories, pattern, globs);
+          }
+          if (fingerprint && !found.isEmpty()) {
+            found.setFingerprint(MerkleFingerprint.compute(f.toPath(), found));
+          }
+          return found;
+        }
+      });
+      log.println("Found " + manifest.size() + " files, " + manifest.totalSize() + " bytes");
+      return Optional.of(manifest);
+    } catch (IOException | InterruptedException e) {
+      // maybe the directory doesn't exist.
+      listener.error("Error while reading files from: " + directory.getName());
+    }
     return Optional.empty();
   }
 
   /**
-   * Returns files in a directory which conform to the pattern
+   * Packages the files in the manifest to a single zip file in the scanned directory.
    *
-   * @param directoryToSearch The directory to parse through for files
-   * @param recurse If true the method returns all files from the directory structure.
-   * @param log Jenkins log interface
-   * @return Files in the specified directory
+   * @param directory The scanned directory, the manifest paths are relative to this
+   * @param manifest The files to package
+   * @param options How to package the files
+   * @param zipFileName Name for the zip file, packageName or shardName
+   * @param listener Jenkins console
+   * @return Figures of the packaging or empty if the zip couldn't be made
    */
-  private static List<FilePath> getFiles(
-    FilePath directoryToSearch,
-    boolean includeSubdirectories,
-    Pattern pattern,
-    PrintStream log
+  public static Optional<PackagingStats> packageFiles(
+    FilePath directory,
+    FileManifest manifest,
+    PackagingOptions options,
+    String zipFileName,
+    TaskListener listener
   ) {
-    List<FilePath> filesInFolder = new ArrayList<>();
     try {
-      directoryToSearch.list().forEach((FilePath file) -> {
-        try {
-          if (!file.isDirectory()) {
-            // TODO Use ANT syntax
-            if (pattern.matcher(file.getName()).matches()) {
-              // TODO: Implement sha1sum read for file and set it with readableFile.setSha1Sum(xx)              
-              filesInFolder.add(file);
-            }
-          } else if (includeSubdirectories) {
-            filesInFolder.addAll(getFiles(file, includeSubdirectories, pattern, log));
-          }
-        } catch (IOException | InterruptedException e) {
-          // just ignore, DO NOT throw upwards
-        }
-      });
+      PackagingStats stats = packageFiles(directory, manifest, options, zipFileName);
+      listener.getLogger().println(stats.summary());
+      return Optional.of(stats);
     } catch (IOException | InterruptedException e) {
-      // maybe the directory doesn't exist.
-      log.print("Error while reading folder: " + directoryToSearch.getName());
+      LOGGER.log(Level.WARNING, "Exception while zipping files: {0}", e.getMessage());
     }
-    return filesInFolder;
+    listener.error("Error while packaging files from: " + directory.getName());
+    return Optional.empty();
   }
 
   /**
-   * Method zips files at the location of the first file.
+   * Method zips files to the given directory.
    * 
    * @param directory the directory to make the zip file and the base for all listed files. 
-   * @param files List of file paths
+   * @param manifest The files to package
+   * @param options How to package the files
    * @param zipFileName Name for the zip file
-   * @return the zip file of all files to be 
-   * @throws Exception 
+   * @return Figures of the packaging
+   * @throws IOException if the zip can't be written
+   * @throws InterruptedException if the build is interrupted
    */
-  static FilePath packageFiles(
+  static PackagingStats packageFiles(
     FilePath directory,
-    List<FilePath> files,
+    FileManifest manifest,
+    PackagingOptions options,
     String zipFileName
-  ) throws Exception {
-    //List<FilePath> zipFiles = new ArrayList<>();
-    // TODO simplify
-    // ugly, but since we want to perform the invoke at the file location
-    FilePath fileLocation = files.get(0);
-    FilePath zipFile = fileLocation.act(new MasterToSlaveFileCallable<FilePath>() {
+  ) throws IOException, InterruptedException {
+    return directory.act(new MasterToSlaveFileCallable<PackagingStats>() {
       @Override
-      public FilePath invoke(File f, VirtualChannel channel) {
-        File zipFile = new File(directory + "/" + ZIP_FILE_PREFIX + zipFileName);        
-        try {
-          if (zipFile.exists()) {
-            if (!zipFile.delete()) {
-              throw new RuntimeException("Could not delete old zip file at file location.");
-            }
-          }
-          if (!zipFile.createNewFile()) {
-            throw new RuntimeException("Could not create zip file at file location.");
+      public PackagingStats invoke(File f, VirtualChannel channel) throws IOException {
+        File zipFile = new File(f, zipFileName);
+        if (zipFile.exists()) {
+          if (!zipFile.delete()) {
+            throw new IOException("Could not delete old zip file at file location.");
           }
-          
-          try (
-            FileOutputStream dest = new FileOutputStream(zipFile); 
-            ZipOutputStream zipOutputStream = new ZipOutputStream(dest)
-            ) {
-            
-            for (FilePath fileToRead : files) {
-              zipOutputStream.putNextEntry(
-                new ZipEntry(
-                  // Remove start of path from zip entry name. No point adding the whole path to the
-                  // name of the zip entry
-                  fileToRead.getRemote().substring(
-                    directory.getRemote().length()
-                  )
-                )
-              );
-              
-              InputStream input = fileToRead.read();
-              
-              byte[] bytes = new byte[1024]; // Again an arbitrary number
-              int length;
-              while ((length = input.read(bytes)) >= 0) {
-                zipOutputStream.write(bytes, 0, length);
-              }
-              
-              zipOutputStream.flush();
-            }
-            zipOutputStream.flush();
-          }
-        } catch (IOException | InterruptedException e) {
-          LOGGER.warning("Exception while zipping file. Files will be sent one-by-one. "
-            + "Exception: " + e.getMessage());
         }
-        return new FilePath(zipFile);
+        if (!zipFile.createNewFile()) {
+          throw new IOException("Could not create zip file at file location.");
+        }
+        try (OutputStream dest = new FileOutputStream(zipFile)) {
+          return ZipPackager.write(f.toPath(), withoutPackage(manifest, zipFileName), options, dest);
+        }
       }
     });
-    return zipFile;
+  }
+
+  /**
+   * Zips the files on the agent straight into the write end of the pipe. The zip is never written
+   * to disk. The returned future completes when the whole zip has been written to the pipe.
+   *
+   * @param directory The scanned directory, the manifest paths are relative to this
+   * @param manifest The files to package
+   * @param options How to package the files
+   * @param pipe A remote to local pipe, the local end is read by the caller. Only for directories
+   * on an agent, see streamLocalFiles.
+   * @return Future for the figures of the packaging
+   * @throws IOException if the packaging can't be started
+   * @throws InterruptedException if the build is interrupted
+   */
+  public static Future<PackagingStats> streamFiles(
+    FilePath directory,
+    FileManifest manifest,
+    PackagingOptions options,
+    Pipe pipe
+  ) throws IOException, InterruptedException {
+    return directory.actAsync(new MasterToSlaveFileCallable<PackagingStats>() {
+      @Override
+      public PackagingStats invoke(File f, VirtualChannel channel) throws IOException {
+        try (OutputStream out = pipe.getOut()) {
+          return ZipPackager.write(f.toPath(), manifest, options, out);
+        }
+      }
+    });
+  }
+
+  /**
+   * Zips the files of a directory on the controller into the stream, on a thread of its own. A
+   * remoting pipe can't be used for these, its write end exists only once the pipe has been sent
+   * to an agent. The stream is closed when the zip is written or the packaging fails.
+   *
+   * @param directory The scanned directory on the controller
+   * @param manifest The files to package
+   * @param options How to package the files
+   * @param out Gets the zip, read by the caller
+   * @return Future for the figures of the packaging
+   * @throws IOException if the packaging can't be started
+   * @throws InterruptedException if the build is interrupted
+   */
+  public static Future<PackagingStats> streamLocalFiles(
+    FilePath directory,
+    FileManifest manifest,
+    PackagingOptions options,
+    OutputStream out
+  ) throws IOException, InterruptedException {
+    return directory.actAsync(new LocalStreamCallable(manifest, options, out));
+  }
+
+  /** Zips into a stream of the controller, so it's never sent to an agent */
+  private static final class LocalStreamCallable
+    extends MasterToSlaveFileCallable<PackagingStats> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final FileManifest manifest;
+    private final PackagingOptions options;
+    private final transient OutputStream out;
+
+    LocalStreamCallable(FileManifest manifest, PackagingOptions options, OutputStream out) {
+      this.manifest = manifest;
+      this.options = options;
+      this.out = out;
+    }
+
+    @Override
+    public PackagingStats invoke(File f, VirtualChannel channel) throws IOException {
+      try (OutputStream zip = out) {
+        return ZipPackager.write(f.toPath(), manifest, options, zip);
+      }
+    }
+  }
+
+  /**
+   * Finds the files with identical content on the agent, for uploading only one of them.
+   *
+   * @param directory The scanned directory, the manifest paths are relative to this
+   * @param manifest The files to check
+   * @return The paths of the duplicates keyed by the path of the copy to upload
+   * @throws IOException if a file can't be read
+   * @throws InterruptedException if the build is interrupted
+   */
+  public static Map<String, List<String>> findDuplicates(
+    FilePath directory,
+    FileManifest manifest
+  ) throws IOException, InterruptedException {
+    return directory.act(new MasterToSlaveFileCallable<Map<String, List<String>>>() {
+      @Override
+      public Map<String, List<String>> invoke(File f, VirtualChannel channel) throws IOException {
+        return Deduplicator.findDuplicates(f.toPath(), manifest);
+      }
+    });
+  }
+
+  /**
+   * Uploads from the agent with an http client of its own, so the files never go through the
+   * controller. Packages are zipped while they are uploaded. Returns when all uploads are done.
+   *
+   * @param directory The scanned directory, the paths of the uploads are relative to this
+   * @param uploads What to upload
+   * @param options How to package the files of packaged uploads
+   * @param connection Where and as whom to upload
+   * @return The outcomes of the uploads, in the order of the uploads
+   * @throws IOException if the agent can't be reached
+   * @throws InterruptedException if the build is interrupted
+   */
+  public static List<UploadOutcome> uploadFromAgent(
+    FilePath directory,
+    List<AgentUpload> uploads,
+    PackagingOptions options,
+    AgentConnection connection
+  ) throws IOException, InterruptedException {
+    return directory.act(new MasterToSlaveFileCallable<List<UploadOutcome>>() {
+      @Override
+      public List<UploadOutcome> invoke(File f, VirtualChannel channel)
+        throws InterruptedException {
+        return AgentUploader.upload(f.toPath(), uploads, options, connection);
+      }
+    });
+  }
+
+  /**
+   * @param run Jenkins build run instance
+   * @return The name of the package for the build
+   */
+  public static String packageName(Run<?, ?> run) {
+    return ZIP_FILE_PREFIX + cleanJobName(run.getExternalizableId());
+  }
+
+  /**
+   * @param run Jenkins build run instance
+   * @param shard Index of the shard, from 0
+   * @return The name of the zip of one shard, when the files are uploaded in several packages
+   */
+  public static String shardName(Run<?, ?> run, int shard) {
+    return packageName(run) + "-part" + (shard + 1);
+  }
+
+  /**
+   * Zips left by earlier builds of the job may have been found with the files. When the files
+   * are split into shards, the zip of one shard could be overwritten while another shard reads
+   * it, so they are left out before splitting.
+   *
+   * @param manifest The files found
+   * @param run Jenkins build run instance
+   * @return The manifest without the zips of this job in the scanned directory
+   */
+  public static FileManifest withoutPackages(FileManifest manifest, Run<?, ?> run) {
+    String name = packageName(run);
+    List<FileManifest.Entry> entries = new ArrayList<>(manifest.getEntries());
+    entries.removeIf((entry) -> entry.getRelativePath().startsWith(name)
+      && !entry.getRelativePath().contains("/"));
+    FileManifest withoutPackages = new FileManifest(entries);
+    withoutPackages.setFingerprint(manifest.getFingerprint());
+    return withoutPackages;
+  }
+
+  /**
+   * A zip left by an earlier build may have been found with the files. It's about to be
+   * overwritten, so it mustn't be read into the new zip.
+   */
+  private static FileManifest withoutPackage(FileManifest manifest, String zipFileName) {
+    List<FileManifest.Entry> entries = new ArrayList<>(manifest.getEntries());
+    entries.removeIf((entry) -> entry.getRelativePath().equals(zipFileName));
+    return new FileManifest(entries);
   }
 
   public static boolean removeFilePackage(
@@ -11,6 +11,7 @@
 package com.synopsys.protecode.sc.jenkins.utils;
 
 import com.synopsys.protecode.sc.jenkins.types.ConnectionStatus;
+import com.synopsys.protecode.sc.jenkins.types.AggregateResult;
 import com.synopsys.protecode.sc.jenkins.types.FileResult;
 import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
 import com.synopsys.protecode.sc.jenkins.types.InternalTypes;
@@ -66,9 +67,19 @@ public final class UtilitiesGeneral {
   }
   
   public static String buildReportString(FileResult result) {    
+    return buildReportString(result.getFiles());
+  }
+
+  public static String buildReportString(AggregateResult results) {
+    return buildReportString(results.getFiles());
+  }
+
+  private static String buildReportString(
+    Map<String, Map<HttpTypes.Component, InternalTypes.VulnStatus>> files
+  ) {
     StringBuilder report = new StringBuilder();
     report.append("--------- Following files have vulnerabilities ---------\n");
-    for (Map.Entry<String, Map<HttpTypes.Component, InternalTypes.VulnStatus>> file : result.getFiles().entrySet()) {
+    for (Map.Entry<String, Map<HttpTypes.Component, InternalTypes.VulnStatus>> file : files.entrySet()) {
       if (file.getValue().values().stream().anyMatch((vulnStatus) -> (vulnStatus.untriagedVulnsCount()>0))) {
         report.append("\t").append(file.getKey()).append("\n");
       }
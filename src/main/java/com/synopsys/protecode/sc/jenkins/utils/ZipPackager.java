@@ -0,0 +1,176 @@
+/*******************************************************************************
+* Copyright (c) 2018 Synopsys, Inc
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*    Synopsys, Inc - initial implementation and documentation
+*******************************************************************************/
+
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.PackagingStats;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the files of a manifest as a zip to a stream. The stream can be a file or the upload
+ * itself. Meant to be run on the agent, where the files can be read locally.
+ */
+public final class ZipPackager {
+
+  private ZipPackager() {
+    // don't instantiate me...
+  }
+
+  /**
+   * Writes the zip. The given stream is finished but not closed.
+   *
+   * Already compressed files are stored as is if the options say so. A stored entry needs its
+   * CRC before its content is written, so stored files are read twice. That's still much cheaper
+   * than deflating them.
+   *
+   * If the options ask for it, only one copy of identical files is packaged. The others are
+   * listed in the returned figures. If the options ask for more than one thread, the zip is
+   * written by ParallelZipPackager.
+   *
+   * A reproducible zip is always written by ParallelZipPackager, since its chunks and so its
+   * bytes are the same for any number of threads. The entries are sorted by path and get a fixed
+   * timestamp, so the zip, and its SHA-1, change only when the files do. Of identical files the
+   * first one by path is packaged.
+   *
+   * The SHA-1 of the zip is computed while it's written, so Protecode SC can be asked whether it
+   * already has the package without reading the zip again.
+   *
+   * @param root The directory the manifest paths are relative to
+   * @param manifest The files to package
+   * @param options How to package the files
+   * @param out The stream to write the zip to
+   * @return Figures of the packaging
+   * @throws IOException if reading a file or writing the zip fails
+   */
+  public static PackagingStats write(
+    Path root,
+    FileManifest manifest,
+    PackagingOptions options,
+    OutputStream out
+  ) throws IOException {
+    long startCpu = cpuTime();
+    long start = System.nanoTime();
+    FileManifest ordered = options.isReproducible() ? sorted(manifest) : manifest;
+    Map<String, List<String>> duplicates = options.isDeduplicate()
+      ? Deduplicator.findDuplicates(root, ordered)
+      : Collections.emptyMap();
+    FileManifest unique = Deduplicator.withoutDuplicates(ordered, duplicates);
+    long dedupCpu = cpuTime() - startCpu;
+    long dedupWall = System.nanoTime() - start;
+
+    MessageDigest sha1 = sha1();
+    OutputStream digested = new DigestOutputStream(out, sha1);
+    PackagingStats stats = options.getThreads() > 1 || options.isReproducible()
+      ? ParallelZipPackager.write(root, unique, options, digested)
+      : writeEntries(root, unique, options, digested);
+    stats.setSha1(MerkleFingerprint.toHex(sha1.digest()));
+
+    stats.setCpuNanos(stats.getCpuNanos() + dedupCpu);
+    stats.setWallNanos(stats.getWallNanos() + dedupWall);
+    if (!duplicates.isEmpty()) {
+      stats.setDuplicates(new HashMap<>(duplicates));
+      stats.setDuplicateFiles(manifest.size() - unique.size());
+      stats.setDuplicateBytes(manifest.totalSize() - unique.totalSize());
+    }
+    return stats;
+  }
+
+  private static PackagingStats writeEntries(
+    Path root,
+    FileManifest manifest,
+    PackagingOptions options,
+    OutputStream out
+  ) throws IOException {
+    long startCpu = cpuTime();
+    long start = System.nanoTime();
+    PackagingStats stats = new PackagingStats();
+
+    ZipOutputStream zipOutputStream = new ZipOutputStream(out);
+    zipOutputStream.setLevel(options.getCompressionLevel());
+    ChannelReader reader = new ChannelReader();
+    for (FileManifest.Entry entry : manifest.getEntries()) {
+      Path file = root.resolve(entry.getRelativePath());
+      ZipEntry zipEntry = new ZipEntry(entry.getRelativePath());
+      boolean store = options.isStoreCompressed()
+        && CompressionPolicy.isCompressed(file, entry.getSize());
+      if (store) {
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(entry.getSize());
+        zipEntry.setCompressedSize(entry.getSize());
+        zipEntry.setCrc(crc(file, reader));
+      }
+      zipOutputStream.putNextEntry(zipEntry);
+      reader.read(file, (data, length) -> zipOutputStream.write(data, 0, length));
+      zipOutputStream.closeEntry();
+      if (store) {
+        stats.addStored(zipEntry.getSize());
+      } else {
+        stats.addDeflated(zipEntry.getSize(), zipEntry.getCompressedSize());
+      }
+    }
+    zipOutputStream.finish();
+    zipOutputStream.flush();
+
+    stats.setWallNanos(System.nanoTime() - start);
+    stats.setCpuNanos(cpuTime() - startCpu);
+    stats.addRead(reader.getBytesRead(), reader.getReadNanos());
+    return stats;
+  }
+
+  private static FileManifest sorted(FileManifest manifest) {
+    List<FileManifest.Entry> entries = new ArrayList<>(manifest.getEntries());
+    entries.sort(Comparator.comparing(FileManifest.Entry::getRelativePath));
+    FileManifest sorted = new FileManifest(entries);
+    sorted.setFingerprint(manifest.getFingerprint());
+    return sorted;
+  }
+
+  private static MessageDigest sha1() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM must provide SHA-1
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static long crc(Path file, ChannelReader reader) throws IOException {
+    CRC32 crc = new CRC32();
+    reader.read(file, (data, length) -> crc.update(data, 0, length));
+    return crc.getValue();
+  }
+
+  /**
+   * @return CPU time of the current thread in nanoseconds, or 0 if the JVM can't measure it
+   */
+  static long cpuTime() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0L;
+  }
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiException;
+import com.synopsys.protecode.sc.jenkins.interfaces.Listeners.PollService;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import com.synopsys.protecode.sc.jenkins.utils.Backoff;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPollMultiplexer {
+  private static final String HOST = "https://protecode-sc.example.com";
+  private static final Backoff NO_WAIT = new Backoff(0, 0, 1, 0);
+  /** How long a poll which shouldn't come is waited for */
+  private static final long QUIET_MILLIS = 200;
+
+  @Test
+  @DisplayName("Test a product two builds wait for is polled once for both.")
+  void testCoalesce() throws Exception {
+    PollMultiplexer multiplexer = new PollMultiplexer(4);
+    FakeServer server = new FakeServer();
+    CompletableFuture<HttpTypes.UploadResponse> first =
+      multiplexer.register(HOST, server, 1, NO_WAIT);
+    CompletableFuture<HttpTypes.UploadResponse> second =
+      multiplexer.register(HOST, server, 1, NO_WAIT);
+
+    Poll poll = server.next();
+    assertEquals(1, poll.productId);
+    assertNull(server.nextOrNull());
+    poll.listener.setScanStatus(status("R"));
+
+    assertEquals("R", first.get(5, TimeUnit.SECONDS).getResults().getStatus());
+    assertEquals("R", second.get(5, TimeUnit.SECONDS).getResults().getStatus());
+    assertNull(server.nextOrNull());
+  }
+
+  @Test
+  @DisplayName("Test the same product id on another host is polled separately.")
+  void testOtherHost() throws Exception {
+    PollMultiplexer multiplexer = new PollMultiplexer(4);
+    FakeServer server = new FakeServer();
+    multiplexer.register(HOST, server, 1, NO_WAIT);
+    multiplexer.register("https://other.example.com", server, 1, NO_WAIT);
+
+    assertNotNull(server.next());
+    assertNotNull(server.next());
+  }
+
+  @Test
+  @DisplayName("Test no more polls are in flight than the budget allows.")
+  void testInFlightCap() throws Exception {
+    PollMultiplexer multiplexer = new PollMultiplexer(2);
+    FakeServer server = new FakeServer();
+    for (int productId = 1; productId <= 5; productId++) {
+      multiplexer.register(HOST, server, productId, NO_WAIT);
+    }
+
+    Poll first = server.next();
+    Poll second = server.next();
+    assertNull(server.nextOrNull());
+
+    first.listener.setScanStatus(status("R"));
+    Poll third = server.next();
+    assertNull(server.nextOrNull());
+
+    second.listener.setError("Timed out");
+    third.listener.setScanStatus(status("F"));
+    assertNotNull(server.next());
+    assertNotNull(server.next());
+    assertNull(server.nextOrNull());
+  }
+
+  @Test
+  @DisplayName("Test a product nobody waits for any more is no longer polled.")
+  void testCancelLastWaiter() throws Exception {
+    PollMultiplexer multiplexer = new PollMultiplexer(4);
+    FakeServer server = new FakeServer();
+    CompletableFuture<HttpTypes.UploadResponse> first =
+      multiplexer.register(HOST, server, 1, NO_WAIT);
+    CompletableFuture<HttpTypes.UploadResponse> second =
+      multiplexer.register(HOST, server, 1, NO_WAIT);
+
+    Poll poll = server.next();
+    first.cancel(false);
+    poll.listener.setScanStatus(status("B"));
+    // One build still waits
+    poll = server.next();
+    second.cancel(false);
+    poll.listener.setScanStatus(status("B"));
+
+    assertNull(server.nextOrNull());
+    assertEquals(0, waitForProducts(multiplexer, 0));
+  }
+
+  @Test
+  @DisplayName("Test a poll which throws fails its waiters and gives back its budget.")
+  void testPollThrows() throws Exception {
+    PollMultiplexer multiplexer = new PollMultiplexer(1);
+    CompletableFuture<HttpTypes.UploadResponse> failing = multiplexer.register(
+      HOST,
+      (productId, listener) -> {
+        throw new IllegalStateException("No connection pool");
+      },
+      1,
+      NO_WAIT
+    );
+    ExecutionException error = assertThrows(
+      ExecutionException.class,
+      () -> failing.get(5, TimeUnit.SECONDS)
+    );
+    assertTrue(error.getCause() instanceof ApiException);
+
+    FakeServer server = new FakeServer();
+    CompletableFuture<HttpTypes.UploadResponse> next =
+      multiplexer.register(HOST, server, 2, NO_WAIT);
+    server.next().listener.setScanStatus(status("R"));
+    assertEquals("R", next.get(5, TimeUnit.SECONDS).getResults().getStatus());
+  }
+
+  @Test
+  @DisplayName("Test other requests wait for the budget the polls use.")
+  void testRequestShareBudget() throws Exception {
+    PollMultiplexer multiplexer = new PollMultiplexer(1);
+    FakeServer server = new FakeServer();
+    multiplexer.register(HOST, server, 1, NO_WAIT);
+    Poll poll = server.next();
+
+    CompletableFuture<String> sent = new CompletableFuture<>();
+    CompletableFuture<String> fetched = multiplexer.request(() -> {
+      sent.complete("sent");
+      return CompletableFuture.completedFuture("result");
+    });
+    Thread.sleep(QUIET_MILLIS);
+    assertFalse(sent.isDone());
+
+    poll.listener.setScanStatus(status("R"));
+    assertEquals("result", fetched.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  @DisplayName("Test cancelling a request which was sent cancels it.")
+  void testCancelRequest() throws Exception {
+    PollMultiplexer multiplexer = new PollMultiplexer(1);
+    CompletableFuture<String> call = new CompletableFuture<>();
+    CompletableFuture<String> sent = new CompletableFuture<>();
+    CompletableFuture<String> fetched = multiplexer.request(() -> {
+      sent.complete("sent");
+      return call;
+    });
+    sent.get(5, TimeUnit.SECONDS);
+    fetched.cancel(false);
+    assertThrows(CancellationException.class, () -> call.get(5, TimeUnit.SECONDS));
+
+    // The cancelled call gave the budget back
+    FakeServer server = new FakeServer();
+    multiplexer.register(HOST, server, 1, NO_WAIT);
+    assertNotNull(server.next());
+  }
+
+  private static int waitForProducts(PollMultiplexer multiplexer, int expected)
+    throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (multiplexer.getProducts() != expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    return multiplexer.getProducts();
+  }
+
+  private static HttpTypes.UploadResponse status(String state) {
+    HttpTypes.ScanState results = new HttpTypes.ScanState();
+    results.setStatus(state);
+    HttpTypes.UploadResponse response = new HttpTypes.UploadResponse();
+    response.setResults(results);
+    return response;
+  }
+
+  private static final class Poll {
+    final int productId;
+    final PollService listener;
+
+    Poll(int productId, PollService listener) {
+      this.productId = productId;
+      this.listener = listener;
+    }
+  }
+
+  /** Keeps the polls for the test to answer */
+  private static final class FakeServer implements PollMultiplexer.StatusRequest {
+    private final BlockingQueue<Poll> polls = new LinkedBlockingQueue<>();
+
+    @Override
+    public void poll(int productId, PollService listener) {
+      polls.add(new Poll(productId, listener));
+    }
+
+    Poll next() throws InterruptedException {
+      Poll poll = polls.poll(5, TimeUnit.SECONDS);
+      assertNotNull(poll, "A poll was expected");
+      return poll;
+    }
+
+    Poll nextOrNull() throws InterruptedException {
+      return polls.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiAuthenticationException;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiConnectionException;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiException;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiNotFoundException;
+import com.synopsys.protecode.sc.jenkins.exceptions.ApiServerException;
+import com.synopsys.protecode.sc.jenkins.interfaces.ProtecodeScApi;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestProtecodeScService {
+  private static final String SHA1 = "da39a3ee5e6b4b0d3255bfef95601890afd80709";
+
+  private HttpServer server = null;
+  private ProtecodeScApi backend = null;
+  /** The status the server answers with */
+  private volatile int status = 200;
+  /** Lets a held request be answered */
+  private final CountDownLatch release = new CountDownLatch(1);
+  /** Counted down when the server has a request */
+  private final CountDownLatch received = new CountDownLatch(1);
+  private volatile boolean hold = false;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/api/product/", this::handle);
+    server.start();
+    backend = backend(server.getAddress().getPort());
+  }
+
+  @AfterEach
+  void cleanEach() {
+    release.countDown();
+    server.stop(0);
+  }
+
+  @Test
+  @DisplayName("Test the body of a successful response completes the future.")
+  void testSuccess() throws Exception {
+    HttpTypes.ScanResultResponse response = ProtecodeScService.async(
+      backend.scanResult(SHA1), "scan result"
+    ).get(5, TimeUnit.SECONDS);
+    assertEquals(SHA1, response.getResults().getSha1sum());
+  }
+
+  @Test
+  @DisplayName("Test 401 and 403 fail with an authentication error.")
+  void testAuthentication() {
+    status = 401;
+    assertFailsWith(ApiAuthenticationException.class);
+    status = 403;
+    assertFailsWith(ApiAuthenticationException.class);
+  }
+
+  @Test
+  @DisplayName("Test 404 fails with a not found error.")
+  void testNotFound() {
+    status = 404;
+    assertFailsWith(ApiNotFoundException.class);
+  }
+
+  @Test
+  @DisplayName("Test 5xx fails with a server error.")
+  void testServerError() {
+    status = 500;
+    assertFailsWith(ApiServerException.class);
+    status = 503;
+    assertFailsWith(ApiServerException.class);
+  }
+
+  @Test
+  @DisplayName("Test other statuses fail with a generic api error.")
+  void testOtherStatus() {
+    status = 400;
+    ApiException error = assertFailsWith(ApiException.class);
+    assertEquals(ApiException.class, error.getClass());
+    assertTrue(error.getMessage().contains("400"));
+  }
+
+  @Test
+  @DisplayName("Test a server which doesn't answer fails with a connection error.")
+  void testNoResponse() throws IOException {
+    HttpServer closed = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    int port = closed.getAddress().getPort();
+    closed.stop(0);
+    backend = backend(port);
+    assertFailsWith(ApiConnectionException.class);
+  }
+
+  @Test
+  @DisplayName("Test cancelling the future cancels the call.")
+  void testCancel() throws Exception {
+    hold = true;
+    Call<HttpTypes.ScanResultResponse> call = backend.scanResult(SHA1);
+    CompletableFuture<HttpTypes.ScanResultResponse> future = ProtecodeScService.async(
+      call, "scan result"
+    );
+    assertTrue(received.await(5, TimeUnit.SECONDS));
+    assertTrue(future.cancel(true));
+    assertTrue(call.isCanceled());
+    assertTrue(future.isCancelled());
+  }
+
+  private <T extends ApiException> T assertFailsWith(Class<T> type) {
+    CompletableFuture<HttpTypes.ScanResultResponse> future = ProtecodeScService.async(
+      backend.scanResult(SHA1), "scan result"
+    );
+    ExecutionException error = assertThrows(
+      ExecutionException.class,
+      () -> future.get(5, TimeUnit.SECONDS)
+    );
+    assertTrue(type.isInstance(error.getCause()), "Failed with " + error.getCause());
+    return type.cast(error.getCause());
+  }
+
+  private static ProtecodeScApi backend(int port) {
+    return new Retrofit.Builder()
+      .baseUrl("http://localhost:" + port + "/")
+      .addConverterFactory(GsonConverterFactory.create())
+      .build()
+      .create(ProtecodeScApi.class);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    received.countDown();
+    if (hold) {
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    byte[] body = (status == 200
+      ? "{\"results\": {\"sha1sum\": \"" + SHA1 + "\", \"status\": \"R\"}}"
+      : "{\"error\": \"status " + status + "\"}").getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    try (OutputStream out = exchange.getResponseBody()) {
+      exchange.sendResponseHeaders(status, body.length);
+      out.write(body);
+    } catch (IOException e) {
+      // The client cancelled
+    }
+    exchange.close();
+  }
+}
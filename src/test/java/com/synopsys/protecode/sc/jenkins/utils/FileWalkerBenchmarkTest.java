@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the sequential and the fork/join directory walk on a synthetic tree of 100 000 files.
+ * Tagged slow, so it's excluded from the default build. Run with:
+ * mvn test -Dtest=FileWalkerBenchmarkTest -DexcludeTags=none
+ */
+@Tag("slow")
+public class FileWalkerBenchmarkTest {
+  private static final int TOP_DIRECTORIES = 10;
+  private static final int DIRECTORIES_PER_TOP = 100;
+  private static final int FILES_PER_DIRECTORY = 100;
+  private static final int ROUNDS = 3;
+  private static final int PARALLELISM = 8;
+
+  private static Path root = null;
+
+  @BeforeAll
+  static void createTree() throws IOException {
+    root = Files.createTempDirectory("protecode-walker-benchmark");
+    for (int top = 0; top < TOP_DIRECTORIES; top++) {
+      for (int dir = 0; dir < DIRECTORIES_PER_TOP; dir++) {
+        Path directory = Files.createDirectories(root.resolve("top" + top + "/dir" + dir));
+        for (int file = 0; file < FILES_PER_DIRECTORY; file++) {
+          Files.write(directory.resolve("file" + file + ".bin"), new byte[file % 16]);
+        }
+      }
+    }
+  }
+
+  @AfterAll
+  static void deleteTree() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+  }
+
+  @Test
+  @DisplayName("Benchmark sequential walk against fork/join walk and expect identical manifests.")
+  void benchmarkWalks() throws IOException {
+    long sequentialBest = Long.MAX_VALUE;
+    long parallelBest = Long.MAX_VALUE;
+    FileManifest sequential = null;
+    FileManifest parallel = null;
+
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      sequential = FileWalker.walk(root, true, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL);
+      sequentialBest = Math.min(sequentialBest, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      parallel = FileWalker.walkParallel(
+        root, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL, PARALLELISM
+      );
+      parallelBest = Math.min(parallelBest, System.nanoTime() - start);
+    }
+
+    System.out.println(String.format(
+      "Walked %d files: sequential %d ms, fork/join (%d threads) %d ms",
+      sequential.size(),
+      sequentialBest / 1_000_000,
+      PARALLELISM,
+      parallelBest / 1_000_000
+    ));
+    assertEquals(TOP_DIRECTORIES * DIRECTORIES_PER_TOP * FILES_PER_DIRECTORY, sequential.size());
+    assertEquals(sequential.getEntries(), parallel.getEntries());
+  }
+}
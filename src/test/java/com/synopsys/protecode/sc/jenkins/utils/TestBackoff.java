@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestBackoff {
+
+  @Test
+  @DisplayName("Test the wait doubles up to the maximum.")
+  void testGrowth() {
+    Backoff backoff = new Backoff(1000, 30000, 2, 0);
+    assertEquals(1000, backoff.delay(0));
+    assertEquals(2000, backoff.delay(1));
+    assertEquals(16000, backoff.delay(4));
+    assertEquals(30000, backoff.delay(5));
+    assertEquals(30000, backoff.delay(1000));
+  }
+
+  @Test
+  @DisplayName("Test the jitter moves the wait both ways but not over the maximum.")
+  void testJitter() {
+    Backoff backoff = new Backoff(1000, 30000, 2, 0.2);
+    assertEquals(800, backoff.delay(0, 0));
+    assertEquals(1200, backoff.delay(0, 1));
+    assertEquals(30000, backoff.delay(10, 1));
+    assertEquals(24000, backoff.delay(10, 0));
+    for (int i = 0; i < 1000; i++) {
+      long delay = backoff.delay(3);
+      assertTrue(delay >= 6400 && delay <= 9600, "Delay " + delay);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestBandwidthLimiter {
+
+  private static final int RATE = 4 * 1024 * 1024;
+
+  @Test
+  @DisplayName("Test no limit doesn't wait.")
+  void testUnlimited() throws Exception {
+    BandwidthLimiter limiter = new BandwidthLimiter(0);
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; i++) {
+      limiter.acquire(BandwidthLimiter.SLICE);
+    }
+    assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    assertEquals(1000L * BandwidthLimiter.SLICE, limiter.getBytes());
+    assertEquals(0, limiter.getThrottledNanos());
+  }
+
+  @Test
+  @DisplayName("Test the bytes per second stay under the limit.")
+  void testLimit() throws Exception {
+    BandwidthLimiter limiter = new BandwidthLimiter(RATE);
+    long start = System.nanoTime();
+    // A full bucket plus half a second
+    long total = RATE / 4 + RATE / 2;
+    for (long sent = 0; sent < total; sent += BandwidthLimiter.SLICE) {
+      limiter.acquire(BandwidthLimiter.SLICE);
+    }
+    long elapsed = System.nanoTime() - start;
+    assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(450), "Took only " + elapsed + " ns");
+    assertTrue(limiter.getThrottledNanos() > 0);
+  }
+
+  @Test
+  @DisplayName("Test uploads sharing the limiter get even shares.")
+  void testFair() throws Exception {
+    BandwidthLimiter limiter = new BandwidthLimiter(RATE);
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicLong first = new AtomicLong();
+    AtomicLong second = new AtomicLong();
+    Thread one = upload(limiter, running, first);
+    Thread two = upload(limiter, running, second);
+    Thread.sleep(1000);
+    running.set(false);
+    one.join();
+    two.join();
+
+    long sum = first.get() + second.get();
+    // About a second at the limit plus the first bucket
+    assertTrue(sum <= RATE + RATE / 4 + 2 * BandwidthLimiter.SLICE, "Sent " + sum);
+    assertTrue(Math.abs(first.get() - second.get()) <= sum / 5,
+      "Shares " + first.get() + " and " + second.get());
+  }
+
+  @Test
+  @DisplayName("Test removing the limit stops the throttling.")
+  void testSetLimit() throws Exception {
+    BandwidthLimiter limiter = new BandwidthLimiter(RATE);
+    limiter.setBytesPerSecond(0);
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; i++) {
+      limiter.acquire(BandwidthLimiter.SLICE);
+    }
+    assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    assertTrue(!limiter.isLimited());
+  }
+
+  private static Thread upload(BandwidthLimiter limiter, AtomicBoolean running, AtomicLong sent) {
+    Thread thread = new Thread(() -> {
+      limiter.uploadStarted();
+      try {
+        while (running.get()) {
+          limiter.acquire(BandwidthLimiter.SLICE);
+          sent.addAndGet(BandwidthLimiter.SLICE);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        limiter.uploadFinished();
+      }
+    });
+    thread.start();
+    return thread;
+  }
+}
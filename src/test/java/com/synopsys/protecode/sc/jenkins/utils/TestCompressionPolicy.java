@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCompressionPolicy {
+
+  private Path root;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    root = Files.createTempDirectory("compression");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+  }
+
+  @Test
+  @DisplayName("Test compressed files are recognised by extension, magic and entropy.")
+  void testCompressed() throws IOException {
+    byte[] random = new byte[64 * 1024];
+    new Random(1).nextBytes(random);
+    assertTrue(isCompressed("random.bin", random));
+
+    byte[] text = new byte[64 * 1024];
+    Arrays.fill(text, (byte) 'a');
+    assertFalse(isCompressed("text.bin", text));
+    assertTrue(isCompressed("text.jar", text));
+
+    byte[] gzip = text.clone();
+    gzip[0] = (byte) 0x1f;
+    gzip[1] = (byte) 0x8b;
+    assertTrue(isCompressed("gzip.bin", gzip));
+  }
+
+  @Test
+  @DisplayName("Test small files are always deflated.")
+  void testSmall() throws IOException {
+    byte[] random = new byte[1024];
+    new Random(1).nextBytes(random);
+    assertFalse(isCompressed("small.zip", random));
+  }
+
+  private boolean isCompressed(String name, byte[] content) throws IOException {
+    Path file = root.resolve(name);
+    Files.write(file, content);
+    return CompressionPolicy.isCompressed(file, content.length);
+  }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.PackagingStats;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestDeduplicator {
+  private Path root = null;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    root = Files.createTempDirectory("protecode-dedup");
+    Files.createDirectories(root.resolve("module-a/lib"));
+    Files.createDirectories(root.resolve("module-b/lib"));
+    Files.write(root.resolve("app.jar"), new byte[] {1, 2, 3});
+    Files.write(root.resolve("module-a/lib/app.jar"), new byte[] {1, 2, 3});
+    Files.write(root.resolve("module-b/lib/app.jar"), new byte[] {1, 2, 3});
+    // Same size, different content
+    Files.write(root.resolve("module-b/lib/other.jar"), new byte[] {3, 2, 1});
+  }
+
+  @AfterEach
+  void cleanEach() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+  }
+
+  @Test
+  @DisplayName("Test identical files are mapped to the first of them.")
+  void testFindDuplicates() throws IOException {
+    FileManifest manifest = manifest();
+    Map<String, List<String>> duplicates = Deduplicator.findDuplicates(root, manifest);
+    assertEquals(Collections.singletonMap(
+      "app.jar", Arrays.asList("module-a/lib/app.jar", "module-b/lib/app.jar")), duplicates);
+    assertEquals(Arrays.asList("app.jar", "module-b/lib/other.jar"),
+      paths(Deduplicator.withoutDuplicates(manifest, duplicates)));
+  }
+
+  @Test
+  @DisplayName("Test packaging with deduplication leaves out the duplicates.")
+  void testPackageWithoutDuplicates() throws IOException {
+    PackagingOptions options = new PackagingOptions();
+    options.setDeduplicate(true);
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    PackagingStats stats = ZipPackager.write(root, manifest(), options, zip);
+
+    assertEquals(2, stats.getFiles());
+    assertEquals(2, stats.getDuplicateFiles());
+    assertEquals(6, stats.getDuplicateBytes());
+    List<String> names = new ArrayList<>();
+    try (ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+      ZipEntry entry;
+      while ((entry = input.getNextEntry()) != null) {
+        names.add(entry.getName());
+      }
+    }
+    assertEquals(Arrays.asList("app.jar", "module-b/lib/other.jar"), names);
+  }
+
+  private FileManifest manifest() throws IOException {
+    return FileWalker.walk(root, true, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL);
+  }
+
+  private static List<String> paths(FileManifest manifest) {
+    List<String> paths = new ArrayList<>();
+    manifest.getEntries().forEach(entry -> paths.add(entry.getRelativePath()));
+    return paths;
+  }
+}
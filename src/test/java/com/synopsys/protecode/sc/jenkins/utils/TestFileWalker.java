@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestFileWalker {
+  private Path root = null;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    root = Files.createTempDirectory("protecode-walker");
+    Files.createDirectories(root.resolve("lib/nested"));
+    Files.write(root.resolve("app.jar"), new byte[3]);
+    Files.write(root.resolve("readme.txt"), new byte[1]);
+    Files.write(root.resolve("lib/nested/dep.jar"), new byte[5]);
+    Files.createDirectories(root.resolve("node_modules/left-pad"));
+    Files.write(root.resolve("node_modules/left-pad/pad.jar"), new byte[7]);
+  }
+
+  @AfterEach
+  void cleanEach() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+  }
+
+  @Test
+  @DisplayName("Test walk without subdirectories lists only the top level files.")
+  void testWalkTopLevel() throws IOException {
+    FileManifest manifest = FileWalker.walk(
+      root, false, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL
+    );
+    assertEquals(listOf("app.jar", "readme.txt"), paths(manifest));
+  }
+
+  @Test
+  @DisplayName("Test walk with subdirectories and pattern, expect sorted relative paths.")
+  void testWalkRecursiveWithPattern() throws IOException {
+    FileManifest manifest = FileWalker.walk(
+      root, true, Pattern.compile(".*\\.jar"), GlobFilter.ALL
+    );
+    assertEquals(listOf("app.jar", "lib/nested/dep.jar", "node_modules/left-pad/pad.jar"),
+      paths(manifest));
+    assertEquals(15, manifest.totalSize());
+  }
+
+  @Test
+  @DisplayName("Test walk with include and exclude globs, expect excluded directory skipped.")
+  void testWalkWithGlobs() throws IOException {
+    GlobFilter globs = GlobFilter.of("**/*.jar", "**/node_modules/**");
+    FileManifest manifest = FileWalker.walk(root, true, UtilitiesFile.ALL_FILES_PATTERN, globs);
+    assertEquals(listOf("app.jar", "lib/nested/dep.jar"), paths(manifest));
+    assertEquals(
+      manifest.getEntries(),
+      FileWalker.walkParallel(root, UtilitiesFile.ALL_FILES_PATTERN, globs, 4).getEntries()
+    );
+  }
+
+  @Test
+  @DisplayName("Test parallel walk returns the same manifest as the sequential walk.")
+  void testWalkParallelMatchesSequential() throws IOException {
+    FileManifest sequential = FileWalker.walk(
+      root, true, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL
+    );
+    FileManifest parallel = FileWalker.walkParallel(
+      root, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL, 4
+    );
+    assertEquals(sequential.getEntries(), parallel.getEntries());
+  }
+
+  private static List<String> paths(FileManifest manifest) {
+    return manifest.getEntries().stream()
+      .map(FileManifest.Entry::getRelativePath)
+      .collect(Collectors.toList());
+  }
+
+  private static List<String> listOf(String... paths) {
+    return Arrays.asList(paths);
+  }
+}
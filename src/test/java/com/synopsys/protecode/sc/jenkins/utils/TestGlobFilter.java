@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestGlobFilter {
+
+  @Test
+  @DisplayName("Test includes with Ant style globs.")
+  void testIncludes() {
+    GlobFilter filter = GlobFilter.of("**/*.jar, dist/*.rpm", "");
+    assertTrue(filter.includes("app.jar"));
+    assertTrue(filter.includes("a/b/c/app.jar"));
+    assertTrue(filter.includes("dist/app.rpm"));
+    assertFalse(filter.includes("dist/sub/app.rpm"));
+    assertFalse(filter.includes("app.jar.sha1"));
+  }
+
+  @Test
+  @DisplayName("Test excludes and directory pruning.")
+  void testExcludes() {
+    GlobFilter filter = GlobFilter.of(null, "**/node_modules/**, target/test-classes/, *.txt");
+    assertFalse(filter.includes("web/node_modules/pad/pad.js"));
+    assertFalse(filter.includes("target/test-classes/a.class"));
+    assertFalse(filter.includes("readme.txt"));
+    assertTrue(filter.includes("docs/readme.txt"));
+    assertTrue(filter.prunes("node_modules"));
+    assertTrue(filter.prunes("web/node_modules"));
+    assertTrue(filter.prunes("target/test-classes"));
+    assertFalse(filter.prunes("target"));
+    assertFalse(filter.prunes("docs"));
+  }
+
+  @Test
+  @DisplayName("Test empty globs include everything.")
+  void testEmpty() {
+    GlobFilter filter = GlobFilter.of("", " ");
+    assertTrue(filter.includes("any/file.bin"));
+    assertFalse(filter.prunes("any"));
+  }
+}
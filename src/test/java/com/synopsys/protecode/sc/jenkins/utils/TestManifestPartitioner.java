@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestManifestPartitioner {
+
+  @Test
+  @DisplayName("Test shards are balanced by size and have every file once.")
+  void testBalanced() {
+    List<FileManifest.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      entries.add(new FileManifest.Entry("file" + i, 1000 + i * 37, 0));
+    }
+    FileManifest manifest = new FileManifest(entries);
+    List<FileManifest> shards = ManifestPartitioner.partition(manifest, 4);
+
+    assertEquals(4, shards.size());
+    Set<String> paths = new HashSet<>();
+    long largest = 0;
+    long smallest = Long.MAX_VALUE;
+    for (FileManifest shard : shards) {
+      shard.getEntries().forEach((entry) -> paths.add(entry.getRelativePath()));
+      largest = Math.max(largest, shard.totalSize());
+      smallest = Math.min(smallest, shard.totalSize());
+    }
+    assertEquals(100, paths.size());
+    // No shard is off by more than the largest single file
+    assertTrue(largest - smallest <= 1000 + 99 * 37);
+  }
+
+  @Test
+  @DisplayName("Test files of equal size stay in the same shard.")
+  void testEqualSizesTogether() {
+    List<FileManifest.Entry> entries = new ArrayList<>();
+    entries.add(new FileManifest.Entry("a/lib.jar", 500, 0));
+    entries.add(new FileManifest.Entry("b/lib.jar", 500, 0));
+    entries.add(new FileManifest.Entry("big.bin", 2000, 0));
+    entries.add(new FileManifest.Entry("other.bin", 900, 0));
+    List<FileManifest> shards = ManifestPartitioner.partition(new FileManifest(entries), 2);
+
+    assertEquals(2, shards.size());
+    boolean together = shards.stream().anyMatch((shard) -> shard.getEntries().stream()
+      .filter((entry) -> entry.getSize() == 500).count() == 2);
+    assertTrue(together);
+  }
+
+  @Test
+  @DisplayName("Test no empty shards with fewer files than shards.")
+  void testFewFiles() {
+    List<FileManifest.Entry> entries = new ArrayList<>();
+    entries.add(new FileManifest.Entry("one", 1, 0));
+    entries.add(new FileManifest.Entry("two", 2, 0));
+    assertEquals(2, ManifestPartitioner.partition(new FileManifest(entries), 4).size());
+    assertEquals(1, ManifestPartitioner.partition(new FileManifest(entries), 1).size());
+  }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class TestMerkleFingerprint {
+  private Path root = null;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    root = Files.createTempDirectory("protecode-merkle");
+    Files.createDirectories(root.resolve("lib"));
+    Files.write(root.resolve("app.jar"), new byte[] {1, 2, 3});
+    Files.write(root.resolve("lib/util.jar"), new byte[] {4, 5, 6});
+  }
+
+  @AfterEach
+  void cleanEach() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+  }
+
+  @Test
+  @DisplayName("Test the fingerprint doesn't change when only the timestamps change.")
+  void testStableOverTimestamps() throws IOException {
+    String before = fingerprint();
+    Files.setLastModifiedTime(root.resolve("app.jar"), FileTime.fromMillis(0));
+    Files.setLastModifiedTime(root.resolve("lib/util.jar"), FileTime.fromMillis(1000000));
+    assertEquals(before, fingerprint());
+  }
+
+  @Test
+  @DisplayName("Test the fingerprint changes when a file is renamed.")
+  void testRename() throws IOException {
+    String before = fingerprint();
+    Files.move(root.resolve("lib/util.jar"), root.resolve("lib/other.jar"));
+    assertNotEquals(before, fingerprint());
+  }
+
+  @Test
+  @DisplayName("Test the fingerprint changes when the content of a file changes.")
+  void testContentChange() throws IOException {
+    String before = fingerprint();
+    Files.write(root.resolve("lib/util.jar"), new byte[] {4, 5, 7});
+    assertNotEquals(before, fingerprint());
+  }
+
+  private String fingerprint() throws IOException {
+    FileManifest manifest = FileWalker.walk(
+      root, true, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL
+    );
+    return MerkleFingerprint.compute(root, manifest);
+  }
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.PackagingStats;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestParallelZipPackager {
+  private Path root = null;
+  private Path zip = null;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    root = Files.createTempDirectory("protecode-zip");
+    zip = Files.createTempFile("protecode-zip", ".zip");
+    Random random = new Random(42);
+
+    byte[] text = new byte[3 * ParallelZipPackager.CHUNK_SIZE + 12345];
+    for (int i = 0; i < text.length; i++) {
+      text[i] = (byte) ('a' + random.nextInt(4));
+    }
+    byte[] noise = new byte[ParallelZipPackager.CHUNK_SIZE + 1];
+    random.nextBytes(noise);
+
+    Files.createDirectories(root.resolve("lib/nested"));
+    Files.write(root.resolve("big.txt"), text);
+    Files.write(root.resolve("lib/noise.bin"), noise);
+    Files.write(root.resolve("lib/nested/app.jar"), noise);
+    Files.write(root.resolve("lib/nested/empty.txt"), new byte[0]);
+    Files.write(root.resolve("lib/nested/with space.txt"), "spaces".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @AfterEach
+  void cleanEach() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+    Files.deleteIfExists(zip);
+  }
+
+  @Test
+  @DisplayName("Test parallel zip has the same contents as the files, deflated and stored.")
+  void testParallelZip() throws IOException {
+    for (boolean storeCompressed : new boolean[] {false, true}) {
+      FileManifest manifest = FileWalker.walk(root, true, UtilitiesFile.ALL_FILES_PATTERN,
+        GlobFilter.ALL);
+      PackagingOptions options = new PackagingOptions();
+      options.setThreads(4);
+      options.setStoreCompressed(storeCompressed);
+      PackagingStats stats;
+      try (OutputStream out = Files.newOutputStream(zip)) {
+        stats = ParallelZipPackager.write(root, manifest, options, out);
+      }
+      assertEquals(manifest.size(), stats.getFiles());
+      assertEquals(manifest.totalSize(), stats.inputBytes());
+      assertEquals(storeCompressed ? 2 : 0, stats.getStoredFiles());
+      assertEquals(contents(root, manifest), unzip(zip));
+    }
+  }
+
+  @Test
+  @DisplayName("Test parallel zip of the same files matches the single threaded zip.")
+  void testSameAsSingleThreaded() throws IOException {
+    FileManifest manifest = FileWalker.walk(root, true, UtilitiesFile.ALL_FILES_PATTERN,
+      GlobFilter.ALL);
+    PackagingOptions options = new PackagingOptions();
+    options.setStoreCompressed(true);
+    ByteArrayOutputStream single = new ByteArrayOutputStream();
+    ZipPackager.write(root, manifest, options, single);
+    Files.write(zip, single.toByteArray());
+    Map<String, String> expected = unzip(zip);
+
+    options.setThreads(3);
+    try (OutputStream out = Files.newOutputStream(zip)) {
+      ZipPackager.write(root, manifest, options, out);
+    }
+    assertEquals(expected, unzip(zip));
+  }
+
+  @Test
+  @DisplayName("Test reproducible zips of the same files are byte identical.")
+  void testReproducible() throws IOException, NoSuchAlgorithmException {
+    FileManifest manifest = FileWalker.walk(root, true, UtilitiesFile.ALL_FILES_PATTERN,
+      GlobFilter.ALL);
+    PackagingOptions options = new PackagingOptions();
+    options.setStoreCompressed(true);
+    options.setReproducible(true);
+    ByteArrayOutputStream first = new ByteArrayOutputStream();
+    PackagingStats stats = ZipPackager.write(root, manifest, options, first);
+
+    // Other timestamps, another order and another number of threads
+    Files.setLastModifiedTime(root.resolve("big.txt"), FileTime.fromMillis(1000000000000L));
+    FileManifest touched = FileWalker.walk(root, true, UtilitiesFile.ALL_FILES_PATTERN,
+      GlobFilter.ALL);
+    List<FileManifest.Entry> shuffled = new ArrayList<>(touched.getEntries());
+    Collections.reverse(shuffled);
+    options.setThreads(3);
+    ByteArrayOutputStream second = new ByteArrayOutputStream();
+    ZipPackager.write(root, new FileManifest(shuffled), options, second);
+
+    MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+    assertEquals(
+      MerkleFingerprint.toHex(sha1.digest(first.toByteArray())),
+      MerkleFingerprint.toHex(sha1.digest(second.toByteArray()))
+    );
+    // The SHA-1 computed while packaging is the SHA-1 of the zip
+    assertEquals(MerkleFingerprint.toHex(sha1.digest(first.toByteArray())), stats.getSha1());
+    Files.write(zip, second.toByteArray());
+    assertEquals(contents(root, manifest), unzip(zip));
+  }
+
+  @Test
+  @DisplayName("Test combining chunk CRCs gives the CRC of the whole data.")
+  void testCombineCrc() {
+    byte[] data = new byte[100000];
+    new Random(7).nextBytes(data);
+    for (int split : new int[] {0, 1, 4096, 99999, 100000}) {
+      CRC32 first = new CRC32();
+      first.update(data, 0, split);
+      CRC32 second = new CRC32();
+      second.update(data, split, data.length - split);
+      CRC32 whole = new CRC32();
+      whole.update(data);
+      assertEquals(whole.getValue(), ParallelZipPackager.combineCrc(
+        first.getValue(), second.getValue(), data.length - split));
+    }
+  }
+
+  /**
+   * @return CRC and size of every file, keyed by the relative path
+   */
+  private static Map<String, String> contents(Path root, FileManifest manifest)
+    throws IOException {
+    Map<String, String> contents = new HashMap<>();
+    for (FileManifest.Entry entry : manifest.getEntries()) {
+      byte[] data = Files.readAllBytes(root.resolve(entry.getRelativePath()));
+      contents.put(entry.getRelativePath(), describe(data));
+    }
+    return contents;
+  }
+
+  private static Map<String, String> unzip(Path zip) throws IOException {
+    Map<String, String> contents = new HashMap<>();
+    try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (InputStream input = zipFile.getInputStream(entry)) {
+          byte[] buffer = new byte[8192];
+          int length;
+          while ((length = input.read(buffer)) >= 0) {
+            data.write(buffer, 0, length);
+          }
+        }
+        assertEquals(entry.getSize(), data.size());
+        contents.put(entry.getName(), describe(data.toByteArray()));
+      }
+    }
+    return contents;
+  }
+
+  private static String describe(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    return data.length + ":" + Long.toHexString(crc.getValue());
+  }
+}
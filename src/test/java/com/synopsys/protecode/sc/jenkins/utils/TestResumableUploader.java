@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.synopsys.protecode.sc.jenkins.interfaces.ProtecodeScApi;
+import com.synopsys.protecode.sc.jenkins.types.HttpTypes;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestResumableUploader {
+  private static final int CHUNK_SIZE = 1000;
+  private static final int RETRIES = 3;
+
+  private final byte[] data = new byte[2500];
+  private ChunkServer chunkServer = null;
+  private HttpServer server = null;
+  private ProtecodeScApi backend = null;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    new Random(3).nextBytes(data);
+    chunkServer = new ChunkServer();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/api/upload/", chunkServer::handle);
+    server.start();
+    backend = new Retrofit.Builder()
+      .baseUrl("http://localhost:" + server.getAddress().getPort() + "/")
+      .addConverterFactory(GsonConverterFactory.create())
+      .build()
+      .create(ProtecodeScApi.class);
+  }
+
+  @AfterEach
+  void cleanEach() {
+    server.stop(0);
+  }
+
+  @Test
+  @DisplayName("Test a file is uploaded in chunks.")
+  void testUploadInChunks() throws IOException, InterruptedException {
+    ResumableUploader uploader = uploader();
+    HttpTypes.UploadResponse response = uploader.upload();
+    assertEquals(7, response.getResults().getProduct_id());
+    assertArrayEquals(data, chunkServer.received.toByteArray());
+    assertEquals(3, chunkServer.requests);
+    assertEquals(0, uploader.getRetries());
+  }
+
+  @Test
+  @DisplayName("Test only the failed chunk is sent again.")
+  void testRetryFailedChunk() throws IOException, InterruptedException {
+    chunkServer.failedChunkRequests = 1;
+    chunkServer.failAtOffset = CHUNK_SIZE;
+    ResumableUploader uploader = uploader();
+    uploader.upload();
+    assertArrayEquals(data, chunkServer.received.toByteArray());
+    assertEquals(1, uploader.getRetries());
+    // The first chunk isn't sent again
+    assertEquals(data.length + CHUNK_SIZE, chunkServer.bytesSent);
+  }
+
+  @Test
+  @DisplayName("Test the upload goes on from the bytes the server acknowledged.")
+  void testResumeFromAcknowledged() throws IOException, InterruptedException {
+    chunkServer.keepHalfAtOffset = 0;
+    ResumableUploader uploader = uploader();
+    uploader.upload();
+    assertArrayEquals(data, chunkServer.received.toByteArray());
+    assertEquals(data.length + CHUNK_SIZE / 2, chunkServer.bytesSent);
+  }
+
+  @Test
+  @DisplayName("Test the upload fails when a chunk fails too many times.")
+  void testGiveUp() {
+    chunkServer.failedChunkRequests = Integer.MAX_VALUE;
+    ResumableUploader uploader = uploader();
+    assertThrows(IOException.class, uploader::upload);
+    assertEquals(RETRIES, uploader.getRetries());
+  }
+
+  @Test
+  @DisplayName("Test chunks which the server doesn't acknowledge count as failures.")
+  void testNoProgress() {
+    chunkServer.discard = true;
+    ResumableUploader uploader = uploader();
+    assertThrows(IOException.class, uploader::upload);
+    assertEquals(RETRIES, uploader.getRetries());
+  }
+
+  @Test
+  @DisplayName("Test the upload fails at once when the server refuses it.")
+  void testRefused() {
+    chunkServer.refuse = true;
+    assertThrows(IOException.class, uploader()::upload);
+    assertEquals(1, chunkServer.requests);
+  }
+
+  @Test
+  @DisplayName("Test content ranges.")
+  void testContentRange() {
+    assertEquals("bytes 0-999/2500", ResumableUploader.contentRange(0, 1000, 2500));
+    assertEquals("bytes 2000-2499/2500", ResumableUploader.contentRange(2000, 500, 2500));
+    assertEquals("bytes */0", ResumableUploader.contentRange(0, 0, 0));
+  }
+
+  private ResumableUploader uploader() {
+    ResumableUploader.Source source = new ResumableUploader.Source() {
+      @Override
+      public long size() {
+        return data.length;
+      }
+
+      @Override
+      public InputStream openAt(long offset) {
+        return new ByteArrayInputStream(data, (int) offset, data.length - (int) offset);
+      }
+    };
+    return new ResumableUploader(backend, "1", "test.zip", source, CHUNK_SIZE, RETRIES, 1);
+  }
+
+  /**
+   * Emulates a server which acknowledges chunks with 308 and the range of bytes it has.
+   */
+  private static final class ChunkServer {
+    final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    int requests = 0;
+    long bytesSent = 0;
+    int failedChunkRequests = 0;
+    long failAtOffset = 0;
+    long keepHalfAtOffset = -1;
+    boolean refuse = false;
+    /** Answers 308 without a Range header and keeps nothing */
+    boolean discard = false;
+
+    synchronized void handle(HttpExchange exchange) throws IOException {
+      requests++;
+      byte[] body = readAll(exchange.getRequestBody());
+      bytesSent += body.length;
+      String range = exchange.getRequestHeaders().getFirst("Content-Range");
+      long total = Long.parseLong(range.substring(range.indexOf('/') + 1));
+
+      if (refuse) {
+        respond(exchange, 403, null);
+        return;
+      }
+      if (!range.startsWith("bytes */")) {
+        long first = Long.parseLong(range.substring("bytes ".length(), range.indexOf('-')));
+        if (first == failAtOffset && failedChunkRequests > 0) {
+          failedChunkRequests--;
+          respond(exchange, 503, null);
+          return;
+        }
+        if (first == received.size() && !discard) {
+          int kept = first == keepHalfAtOffset ? body.length / 2 : body.length;
+          keepHalfAtOffset = -1;
+          received.write(body, 0, kept);
+        }
+      }
+
+      if (received.size() == total) {
+        respond(exchange, 200, "{\"meta\":{\"code\":201},\"results\":"
+          + "{\"id\":7,\"sha1sum\":\"abc\",\"status\":\"B\",\"product_id\":7}}");
+      } else {
+        if (received.size() > 0) {
+          exchange.getResponseHeaders().set("Range", "bytes=0-" + (received.size() - 1));
+        }
+        respond(exchange, ResumableUploader.RESUME_INCOMPLETE, null);
+      }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String json) throws IOException {
+      if (json == null) {
+        exchange.sendResponseHeaders(code, -1);
+      } else {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(bytes);
+        }
+      }
+      exchange.close();
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int length;
+      while ((length = input.read(buffer)) >= 0) {
+        bytes.write(buffer, 0, length);
+      }
+      return bytes.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestScanDurations {
+
+  @Test
+  @DisplayName("Test the remaining time is unknown before any scan has finished.")
+  void testUnknown() {
+    ScanDurations durations = new ScanDurations();
+    assertEquals(-1, durations.remaining(1000));
+    assertEquals(0, durations.getAverageMillis());
+  }
+
+  @Test
+  @DisplayName("Test the average moves toward the latest scans.")
+  void testAverage() {
+    ScanDurations durations = new ScanDurations();
+    durations.add(10000);
+    assertEquals(10000, durations.getAverageMillis());
+    durations.add(20000);
+    assertEquals(12000, durations.getAverageMillis());
+    durations.add(-5);
+    assertEquals(2, durations.getScans());
+  }
+
+  @Test
+  @DisplayName("Test the remaining time is never negative.")
+  void testRemaining() {
+    ScanDurations durations = new ScanDurations();
+    durations.add(60000);
+    assertEquals(45000, durations.remaining(15000));
+    assertEquals(0, durations.remaining(90000));
+  }
+}
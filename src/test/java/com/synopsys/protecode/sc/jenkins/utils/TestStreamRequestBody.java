@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.StreamRequestBody;
+import hudson.FilePath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import okhttp3.MediaType;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestStreamRequestBody {
+  private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+  private Path root = null;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    root = Files.createTempDirectory("protecode-request");
+  }
+
+  @AfterEach
+  void cleanEach() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+  }
+
+  @Test
+  @DisplayName("Test a file which doesn't end on a block boundary is sent whole.")
+  void testSendsWholeFile() throws IOException, InterruptedException {
+    // Two and a half blocks
+    byte[] data = write("app.zip", 2 * 1024 * 1024 + 512 * 1024);
+    StreamRequestBody body = new StreamRequestBody(OCTET_STREAM, file("app.zip"));
+    Buffer sent = new Buffer();
+    body.writeTo(sent);
+
+    assertEquals(data.length, body.contentLength());
+    assertEquals(data.length, body.getBytesWritten());
+    assertArrayEquals(data, sent.readByteArray());
+  }
+
+  @Test
+  @DisplayName("Test an empty file is sent as an empty body.")
+  void testEmptyFile() throws IOException, InterruptedException {
+    write("empty.zip", 0);
+    StreamRequestBody body = new StreamRequestBody(OCTET_STREAM, file("empty.zip"));
+    Buffer sent = new Buffer();
+    body.writeTo(sent);
+    assertEquals(0, sent.size());
+  }
+
+  @Test
+  @DisplayName("Test the upload fails if the file grew after its size was read.")
+  void testFileGrew() throws IOException, InterruptedException {
+    write("app.zip", 1000);
+    StreamRequestBody body = new StreamRequestBody(OCTET_STREAM, file("app.zip"));
+    write("app.zip", 3000);
+    assertThrows(IOException.class, () -> body.writeTo(new Buffer()));
+  }
+
+  @Test
+  @DisplayName("Test the upload fails if the file shrank after its size was read.")
+  void testFileShrank() throws IOException, InterruptedException {
+    write("app.zip", 3000);
+    StreamRequestBody body = new StreamRequestBody(OCTET_STREAM, file("app.zip"));
+    write("app.zip", 1000);
+    assertThrows(IOException.class, () -> body.writeTo(new Buffer()));
+  }
+
+  private byte[] write(String name, int size) throws IOException {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    Files.write(root.resolve(name), data);
+    return data;
+  }
+
+  private FilePath file(String name) {
+    return new FilePath(root.resolve(name).toFile());
+  }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUploadProgress {
+
+  private static final long MEGABYTE = 1024 * 1024;
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  @DisplayName("Test the report has percent, rate and time left.")
+  void testReport() {
+    UploadProgress progress = new UploadProgress();
+    progress.expect(60 * MEGABYTE);
+    progress.expect(40 * MEGABYTE);
+    long start = System.nanoTime();
+    progress.report(start);
+
+    progress.sent(20 * MEGABYTE, start);
+    progress.sent(5 * MEGABYTE, start + 5 * SECOND);
+    assertTrue(progress.changedSinceReport());
+    String report = progress.report(start + 5 * SECOND);
+
+    assertFalse(progress.changedSinceReport());
+    assertTrue(report.contains("25.0 MB of 100.0 MB (25%)"), report);
+    assertTrue(report.contains("5.0 MB/s"), report);
+    assertTrue(report.contains("about 15 s left"), report);
+    assertEquals(2, progress.getUploads());
+    assertEquals(5 * SECOND, progress.getSendingNanos());
+  }
+
+  @Test
+  @DisplayName("Test an upload of unknown size leaves out percent and time left.")
+  void testUnknownTotal() {
+    UploadProgress progress = new UploadProgress();
+    progress.expect(10 * MEGABYTE);
+    progress.expect(-1);
+    long start = System.nanoTime();
+    progress.report(start);
+    progress.sent(4 * MEGABYTE, start + SECOND);
+    String report = progress.report(start + 2 * SECOND);
+
+    assertEquals(-1, progress.getTotal());
+    assertTrue(report.contains("2.0 MB/s"), report);
+    assertFalse(report.contains("%"), report);
+    assertFalse(report.contains("left"), report);
+  }
+
+  @Test
+  @DisplayName("Test bytes taken back aren't counted.")
+  void testTakeBack() {
+    UploadProgress progress = new UploadProgress();
+    progress.expect(MEGABYTE);
+    progress.sent(MEGABYTE / 2);
+    progress.sent(-MEGABYTE / 2);
+    progress.sent(MEGABYTE);
+    assertEquals(MEGABYTE, progress.getSent());
+  }
+
+  @Test
+  @DisplayName("Test durations are in minutes and seconds.")
+  void testDuration() {
+    assertEquals("59 s", UploadProgress.duration(59));
+    assertEquals("2 min 5 s", UploadProgress.duration(125));
+  }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.ZipStreamRequestBody;
+import hudson.FilePath;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import okhttp3.MediaType;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestZipStreamRequestBody {
+  private Path root = null;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    root = Files.createTempDirectory("protecode-stream");
+    Files.createDirectories(root.resolve("lib"));
+    Files.write(root.resolve("app.jar"), new byte[] {1, 2, 3});
+    // Larger than the pipe, so the packaging has to wait for the upload
+    byte[] big = new byte[3 * 1024 * 1024];
+    new Random(42).nextBytes(big);
+    Files.write(root.resolve("lib/big.bin"), big);
+  }
+
+  @AfterEach
+  void cleanEach() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+  }
+
+  @Test
+  @DisplayName("Test a directory on the controller is streamed as a zip.")
+  void testStreamLocalDirectory() throws IOException {
+    FileManifest manifest = FileWalker.walk(
+      root, true, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL
+    );
+    ZipStreamRequestBody body = new ZipStreamRequestBody(
+      MediaType.parse("application/zip"),
+      new FilePath(root.toFile()),
+      manifest,
+      new PackagingOptions()
+    );
+    Buffer sent = new Buffer();
+    body.writeTo(sent);
+
+    assertNotNull(body.getStats());
+    assertEquals(2, body.getStats().getFiles());
+    List<String> names = new ArrayList<>();
+    try (ZipInputStream input = new ZipInputStream(sent.inputStream())) {
+      ZipEntry entry;
+      while ((entry = input.getNextEntry()) != null) {
+        names.add(entry.getName());
+      }
+    }
+    assertEquals(Arrays.asList("app.jar", "lib/big.bin"), names);
+  }
+
+  @Test
+  @DisplayName("Test a failed packaging fails the upload instead of hanging it.")
+  void testPackagingFails() throws IOException {
+    FileManifest manifest = FileWalker.walk(
+      root, true, UtilitiesFile.ALL_FILES_PATTERN, GlobFilter.ALL
+    );
+    Files.delete(root.resolve("lib/big.bin"));
+    ZipStreamRequestBody body = new ZipStreamRequestBody(
+      MediaType.parse("application/zip"),
+      new FilePath(root.toFile()),
+      manifest,
+      new PackagingOptions()
+    );
+    assertThrows(IOException.class, () -> body.writeTo(new Buffer()));
+  }
+}
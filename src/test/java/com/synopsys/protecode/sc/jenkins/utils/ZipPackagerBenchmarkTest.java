@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package com.synopsys.protecode.sc.jenkins.utils;
+
+import com.synopsys.protecode.sc.jenkins.types.FileManifest;
+import com.synopsys.protecode.sc.jenkins.types.PackagingOptions;
+import com.synopsys.protecode.sc.jenkins.types.PackagingStats;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the single threaded and the parallel packaging on 1 GB of compressible files, best of
+ * three rounds. Tagged slow, so it's excluded from the default build. Run with:
+ * mvn test -Dtest=ZipPackagerBenchmarkTest -DexcludeTags=none
+ */
+@Tag("slow")
+public class ZipPackagerBenchmarkTest {
+  private static final int FILES = 64;
+  private static final int FILE_SIZE = 16 * 1024 * 1024;
+  private static final int ROUNDS = 3;
+  private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private static Path root = null;
+  private static Path zip = null;
+
+  @BeforeAll
+  static void createFiles() throws IOException {
+    root = Files.createTempDirectory("protecode-zip-benchmark");
+    zip = Files.createTempFile("protecode-zip-benchmark", ".zip");
+    Random random = new Random(1);
+    byte[] data = new byte[FILE_SIZE];
+    for (int file = 0; file < FILES; file++) {
+      // Text like data, which deflates to about a third
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) ('a' + random.nextInt(16));
+      }
+      Files.write(root.resolve("file" + file + ".txt"), data);
+    }
+  }
+
+  @AfterAll
+  static void deleteFiles() throws IOException {
+    FileTestHelper.deleteRecursively(root);
+    Files.deleteIfExists(zip);
+  }
+
+  @Test
+  @DisplayName("Benchmark single threaded packaging against parallel packaging.")
+  void benchmarkPackaging() throws IOException {
+    FileManifest manifest = FileWalker.walk(root, false, UtilitiesFile.ALL_FILES_PATTERN,
+      GlobFilter.ALL);
+    PackagingOptions single = new PackagingOptions();
+    PackagingOptions parallel = new PackagingOptions();
+    parallel.setThreads(THREADS);
+
+    long singleBest = Long.MAX_VALUE;
+    long parallelBest = Long.MAX_VALUE;
+    PackagingStats singleStats = null;
+    PackagingStats parallelStats = null;
+    for (int round = 0; round < ROUNDS; round++) {
+      singleStats = packageTo(manifest, single);
+      singleBest = Math.min(singleBest, singleStats.getWallNanos());
+      parallelStats = packageTo(manifest, parallel);
+      parallelBest = Math.min(parallelBest, parallelStats.getWallNanos());
+    }
+
+    double megabytes = manifest.totalSize() / (1024.0 * 1024.0);
+    System.out.println(String.format(
+      "Packaged %.0f MB: single thread %d ms (%.0f MB/s), %d threads %d ms (%.0f MB/s), "
+        + "speedup %.1fx",
+      megabytes,
+      singleBest / 1_000_000,
+      megabytes / (singleBest / 1e9),
+      THREADS,
+      parallelBest / 1_000_000,
+      megabytes / (parallelBest / 1e9),
+      (double) singleBest / parallelBest
+    ));
+    assertEquals(singleStats.inputBytes(), parallelStats.inputBytes());
+  }
+
+  private static PackagingStats packageTo(FileManifest manifest, PackagingOptions options)
+    throws IOException {
+    try (OutputStream out = Files.newOutputStream(zip)) {
+      return ZipPackager.write(root, manifest, options, out);
+    }
+  }
+}